@@ -0,0 +1,73 @@
+package tk.ivybits.neural.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import tk.ivybits.neural.ocr.BinaryImage;
+import tk.ivybits.neural.ocr.Downsample;
+import tk.ivybits.neural.ocr.Downsampler;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Downsample#downSample} and {@link Downsampler#downSample} over every glyph of a font, which is what
+ * recognizing a line of text amounts to.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DownsampleBenchmark {
+    @Param({Font.SERIF, Font.SANS_SERIF, Font.MONOSPACED})
+    public String font;
+    @Param({"48"})
+    public int fontSize;
+
+    private List<BufferedImage> images;
+    private List<BinaryImage> bitmaps;
+    private final double[][] sample = new double[Fixtures.SAMPLE_WIDTH][Fixtures.SAMPLE_HEIGHT];
+    private final Downsampler downsampler = new Downsampler(Fixtures.SAMPLE_WIDTH, Fixtures.SAMPLE_HEIGHT);
+    private final double[] input = new double[Fixtures.SAMPLE_WIDTH * Fixtures.SAMPLE_HEIGHT];
+
+    @Setup
+    public void render() {
+        images = Fixtures.glyphs(Fixtures.font(font, fontSize));
+        bitmaps = Fixtures.binaryGlyphs(Fixtures.font(font, fontSize));
+    }
+
+    @Benchmark
+    public void bufferedImage(Blackhole bh) {
+        for (BufferedImage image : images) {
+            Downsample.downSample(image, sample);
+            bh.consume(sample);
+        }
+    }
+
+    @Benchmark
+    public void bitmap(Blackhole bh) {
+        for (BinaryImage bitmap : bitmaps) {
+            Downsample.downSample(bitmap, sample);
+            bh.consume(sample);
+        }
+    }
+
+    @Benchmark
+    public void any(Blackhole bh) {
+        for (BinaryImage bitmap : bitmaps) {
+            downsampler.downSample(bitmap, false, input);
+            bh.consume(input);
+        }
+    }
+
+    @Benchmark
+    public void coverage(Blackhole bh) {
+        for (BinaryImage bitmap : bitmaps) {
+            downsampler.downSample(bitmap, true, input);
+            bh.consume(input);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package tk.ivybits.neural.benchmark;
+
+import tk.ivybits.neural.ocr.BinaryImage;
+import tk.ivybits.neural.ocr.GlyphGenerator;
+import tk.ivybits.neural.ocr.GlyphRecognizer;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Reproducible inputs shared by the benchmarks.
+ * <p/>
+ * Everything is rendered with the JRE's logical fonts, which every installation provides, and any randomness is
+ * drawn from a fixed seed so that two runs on the same machine measure the same work.
+ */
+public final class Fixtures {
+    public static final long SEED = 0x5EEDL;
+    public static final char[] GLYPHS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789".toCharArray();
+    public static final String[] FONT_NAMES = {Font.SERIF, Font.SANS_SERIF, Font.MONOSPACED};
+    // The demo trains and recognizes at this size
+    public static final int SAMPLE_WIDTH = 7, SAMPLE_HEIGHT = 7;
+
+    private Fixtures() {
+    }
+
+    public static Font font(String name, int size) {
+        return new Font(name, Font.PLAIN, size);
+    }
+
+    /**
+     * @return Every glyph of {@link #GLYPHS} rendered in the given font, as produced by
+     * {@link GlyphGenerator#getGlyphImage(Font, char)}.
+     */
+    public static List<BufferedImage> glyphs(Font font) {
+        List<BufferedImage> glyphs = new ArrayList<>(GLYPHS.length);
+        for (char c : GLYPHS) {
+            glyphs.add(GlyphGenerator.getGlyphImage(font, c));
+        }
+        return glyphs;
+    }
+
+    public static List<BinaryImage> binaryGlyphs(Font font) {
+        List<BinaryImage> glyphs = new ArrayList<>(GLYPHS.length);
+        for (BufferedImage glyph : glyphs(font)) {
+            glyphs.add(BinaryImage.of(glyph));
+        }
+        return glyphs;
+    }
+
+    /**
+     * Renders a page of random words.
+     *
+     * @param font   The font to set the text in.
+     * @param width  The width of the page, in pixels.
+     * @param height The height of the page, in pixels.
+     * @param seed   The seed the words are drawn from.
+     * @return A black-on-white {@link BufferedImage#TYPE_INT_RGB} page.
+     */
+    public static BufferedImage page(Font font, int width, int height, long seed) {
+        Random random = new Random(seed);
+        BufferedImage page = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = page.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, width, height);
+        g.setColor(Color.BLACK);
+        g.setFont(font);
+        FontMetrics metrics = g.getFontMetrics();
+
+        int margin = font.getSize();
+        for (int y = margin + metrics.getAscent(); y + metrics.getDescent() < height - margin; y += metrics.getHeight()) {
+            StringBuilder line = new StringBuilder();
+            while (true) {
+                StringBuilder word = new StringBuilder();
+                for (int n = 2 + random.nextInt(7); n != 0; n--) {
+                    word.append(GLYPHS[random.nextInt(GLYPHS.length)]);
+                }
+                String next = line.length() == 0 ? word.toString() : line + " " + word;
+                if (metrics.stringWidth(next) > width - 2 * margin) break;
+                line.setLength(0);
+                line.append(next);
+            }
+            g.drawString(line.toString(), margin, y);
+        }
+        g.dispose();
+        return page;
+    }
+
+    /**
+     * Scatters specks over a blank page, as noise on a poor scan does.
+     *
+     * @param width  The width of the page, in pixels.
+     * @param height The height of the page, in pixels.
+     * @param specks The number of pixels to turn on. Specks which land next to each other join, so the page holds
+     *               slightly fewer components.
+     * @param seed   The seed the specks are placed from.
+     */
+    public static BinaryImage speckle(int width, int height, int specks, long seed) {
+        Random random = new Random(seed);
+        BinaryImage page = new BinaryImage(width, height);
+        for (int i = 0; i != specks; i++) {
+            page.set(random.nextInt(width), random.nextInt(height));
+        }
+        return page;
+    }
+
+    /**
+     * @return The network input of every glyph of {@link #GLYPHS} in the given font, in order.
+     */
+    public static double[][] inputs(Font font) {
+        GlyphRecognizer recognizer = new GlyphRecognizer(SAMPLE_WIDTH, SAMPLE_HEIGHT, true, GLYPHS);
+        List<BinaryImage> glyphs = binaryGlyphs(font);
+        double[][] inputs = new double[glyphs.size()][];
+        for (int i = 0; i != inputs.length; i++) {
+            inputs[i] = recognizer.getInputFor(glyphs.get(i), false);
+        }
+        return inputs;
+    }
+
+    /**
+     * @return A recognizer trained on {@link #GLYPHS} in the given font.
+     */
+    public static GlyphRecognizer recognizer(Font font) {
+        GlyphRecognizer recognizer = new GlyphRecognizer(SAMPLE_WIDTH, SAMPLE_HEIGHT, true, GLYPHS);
+        recognizer.train(font);
+        return recognizer;
+    }
+}
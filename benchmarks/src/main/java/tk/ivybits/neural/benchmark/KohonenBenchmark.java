@@ -0,0 +1,67 @@
+package tk.ivybits.neural.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import tk.ivybits.neural.network.kohonen.KohonenNetwork;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link KohonenNetwork#winner} and {@link KohonenNetwork#learn} on the inputs of a font's glyphs.
+ * <p/>
+ * The network draws its initial weights from its own {@link java.util.Random}, which is left unseeded here rather
+ * than fixed with {@link tk.ivybits.neural.network.kohonen.TrainingSchedule#setSeed(Long)}. The number of epochs
+ * {@code learn} takes therefore varies from one invocation to the next; read its sampled distribution rather than a
+ * single figure.
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class KohonenBenchmark {
+    private double[][] inputs;
+    private KohonenNetwork<Character> trained;
+    private int next;
+
+    @Setup
+    public void train() {
+        inputs = Fixtures.inputs(Fixtures.font(Fixtures.FONT_NAMES[0], 48));
+        trained = network();
+        trained.learn();
+    }
+
+    private KohonenNetwork<Character> network() {
+        KohonenNetwork<Character> net = new KohonenNetwork<>(inputs[0].length, inputs.length);
+        for (int i = 0; i != inputs.length; i++) {
+            net.queueData(Fixtures.GLYPHS[i], inputs[i]);
+        }
+        return net;
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    @Warmup(iterations = 5, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public int winner() {
+        double[] input = inputs[next];
+        next = (next + 1) % inputs.length;
+        return trained.winner(input);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    @Warmup(iterations = 5, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public int[] winners() {
+        return trained.winners(inputs);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2, time = 5)
+    @Measurement(iterations = 5, time = 5)
+    public KohonenNetwork<Character> learn() {
+        KohonenNetwork<Character> net = network();
+        net.learn();
+        return net;
+    }
+}
@@ -0,0 +1,66 @@
+package tk.ivybits.neural.benchmark;
+
+import tk.ivybits.neural.ocr.ConnectedComponents;
+import tk.ivybits.neural.ocr.GlyphBounds;
+
+import java.awt.geom.Rectangle2D;
+import java.util.*;
+import java.util.List;
+
+/**
+ * The iterative box merge {@link GlyphBounds} used before it collapsed boxes in a single sorted sweep, kept as the
+ * baseline of {@link SegmentationBenchmark}.
+ * <p/>
+ * Every pass compares every pair of boxes and the passes repeat until nothing collapses, so the merge is quadratic or
+ * worse in the number of components.
+ */
+final class LegacyGlyphBounds {
+    private LegacyGlyphBounds() {
+    }
+
+    static List<Rectangle2D> getBoundingBoxes(ConnectedComponents components, int threshold) {
+        List<Rectangle2D> bounds = new ArrayList<>(components.getCount());
+        // Compute bounding boxes of each found character
+        for (int i = 0; i != components.getCount(); i++) {
+            int left = components.getLeft(i);
+            int top = components.getTop(i);
+            bounds.add(new Rectangle2D.Float(left, top, components.getRight(i) - left, components.getBottom(i) - top));
+        }
+
+        // Sort from left to right
+        Collections.sort(bounds, new Comparator<Rectangle2D>() {
+            @Override
+            public int compare(Rectangle2D o1, Rectangle2D o2) {
+                return (int) (o1.getCenterX() - o2.getCenterX());
+            }
+        });
+
+        // Iteratively collapse bounding boxes
+        LinkedList<Rectangle2D> finalBounds = new LinkedList<>();
+        boolean changed;
+        do {
+            changed = false;
+            finalBounds.clear();
+            for (int i = 0; i < bounds.size(); i++) {
+                Rectangle2D p = bounds.get(i);
+                // Any intersecting bounding boxes will always be to the right of this bounding box
+                for (int j = i + 1; j < bounds.size(); j++) {
+                    Rectangle2D c = bounds.get(j);
+                    // Check if the two bounding boxes intersect on the x-axis within a threshold
+                    if ((p.getMaxX() < c.getMaxX() + threshold && p.getMinX() > c.getMinX() - threshold) ||
+                            (c.getMaxX() < p.getMaxX() + threshold && c.getMinX() > p.getMinX() - threshold)) {
+                        // Collapse the bounding boxes
+                        finalBounds.add(p.createUnion(c));
+                        // And remove the original ones
+                        bounds.remove(p);
+                        bounds.remove(c);
+                        changed = true;
+                    }
+                }
+            }
+
+            bounds.addAll(finalBounds);
+        } while (changed);
+        return Collections.unmodifiableList(bounds);
+    }
+}
@@ -0,0 +1,75 @@
+package tk.ivybits.neural.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import tk.ivybits.neural.ocr.BinaryImage;
+import tk.ivybits.neural.ocr.GlyphRecognizer;
+import tk.ivybits.neural.ocr.PageRecognizer;
+import tk.ivybits.neural.ocr.RecognizedGlyph;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end recognition: single glyphs through {@link GlyphRecognizer#recognize}, and whole rendered pages through
+ * {@link PageRecognizer}, serially and on the shared fork-join pool.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RecognizerBenchmark {
+    @Param({"800x600"})
+    public String size;
+
+    private GlyphRecognizer recognizer;
+    private PageRecognizer serial, parallel;
+    private List<BufferedImage> glyphs;
+    private List<BinaryImage> bitmaps;
+    private BufferedImage page;
+
+    @Setup
+    public void train() {
+        Font font = Fixtures.font(Font.SANS_SERIF, 48);
+        recognizer = Fixtures.recognizer(font);
+        serial = new PageRecognizer(recognizer, new ForkJoinPool(1));
+        parallel = new PageRecognizer(recognizer);
+        glyphs = Fixtures.glyphs(font);
+        bitmaps = Fixtures.binaryGlyphs(font);
+        String[] dims = size.split("x");
+        page = Fixtures.page(Fixtures.font(Font.SANS_SERIF, 24),
+                Integer.parseInt(dims[0]), Integer.parseInt(dims[1]), Fixtures.SEED);
+    }
+
+    @TearDown
+    public void shutdown() {
+        serial.getExecutor().shutdown();
+    }
+
+    @Benchmark
+    public void glyph(Blackhole bh) {
+        for (BufferedImage glyph : glyphs) {
+            bh.consume(recognizer.recognize(glyph));
+        }
+    }
+
+    @Benchmark
+    public char[] glyphBatch() {
+        return recognizer.recognize(bitmaps);
+    }
+
+    @Benchmark
+    public List<RecognizedGlyph> pageSerial() {
+        return serial.recognizePage(page);
+    }
+
+    @Benchmark
+    public List<RecognizedGlyph> pageParallel() {
+        return parallel.recognizePage(page);
+    }
+}
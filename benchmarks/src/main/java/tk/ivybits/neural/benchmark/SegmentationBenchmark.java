@@ -0,0 +1,87 @@
+package tk.ivybits.neural.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import tk.ivybits.neural.ocr.BinaryImage;
+import tk.ivybits.neural.ocr.ConnectedComponents;
+import tk.ivybits.neural.ocr.GlyphBounds;
+import tk.ivybits.neural.ocr.PageRecognizer;
+import tk.ivybits.neural.ocr.ZhangSuen;
+
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link GlyphBounds#getBoundingBoxes} on a thinned page, from the image, from the bitmap and from already labeled
+ * components, and labeling the page in one pass and in bands on a fork-join pool.
+ * <p/>
+ * Pages are either text or {@value #SPECKS} specks of noise, which leave over ten thousand components whatever the
+ * size of the page. {@link #mergeLegacy()} collapses the same components with the iterative merge the sweep
+ * replaced.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SegmentationBenchmark {
+    static final int SPECKS = 12000;
+
+    @Param({"800x600", "2000x3000"})
+    public String size;
+    @Param({"text", "speckle"})
+    public String page;
+    @Param({"24"})
+    public int fontSize;
+
+    private BufferedImage image;
+    private BinaryImage bitmap;
+    private ConnectedComponents components;
+
+    @Setup
+    public void render() {
+        String[] dims = size.split("x");
+        int width = Integer.parseInt(dims[0]), height = Integer.parseInt(dims[1]);
+        if (page.equals("speckle")) {
+            bitmap = Fixtures.speckle(width, height, SPECKS, Fixtures.SEED);
+            image = bitmap.toBufferedImage();
+        } else {
+            image = Fixtures.page(Fixtures.font(Fixtures.FONT_NAMES[1], fontSize), width, height, Fixtures.SEED);
+            ZhangSuen.perform(image);
+            bitmap = BinaryImage.of(image);
+        }
+        components = ConnectedComponents.label(bitmap);
+    }
+
+    @Benchmark
+    public List<Rectangle2D> bufferedImage() {
+        return GlyphBounds.getBoundingBoxes(image);
+    }
+
+    @Benchmark
+    public List<Rectangle2D> bitmap() {
+        return GlyphBounds.getBoundingBoxes(bitmap);
+    }
+
+    @Benchmark
+    public ConnectedComponents label() {
+        return ConnectedComponents.label(bitmap);
+    }
+
+    @Benchmark
+    public ConnectedComponents labelBands() {
+        return ConnectedComponents.label(bitmap, PageRecognizer.getDefaultPool());
+    }
+
+    @Benchmark
+    public List<Rectangle2D> merge() {
+        return GlyphBounds.getBoundingBoxes(components, 5);
+    }
+
+    @Benchmark
+    public List<Rectangle2D> mergeLegacy() {
+        return LegacyGlyphBounds.getBoundingBoxes(components, 5);
+    }
+}
@@ -0,0 +1,56 @@
+package tk.ivybits.neural.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import tk.ivybits.neural.ocr.BinaryImage;
+import tk.ivybits.neural.ocr.ZhangSuen;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ZhangSuen#perform} on a rendered page. Thinning works in place, so every invocation gets a fresh copy of
+ * the page.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ThinningBenchmark {
+    @Param({"800x600", "2000x3000"})
+    public String size;
+    @Param({"24"})
+    public int fontSize;
+
+    private BufferedImage page;
+    private BinaryImage bitmap;
+    private BufferedImage image;
+    private BinaryImage bits;
+
+    @Setup(Level.Trial)
+    public void render() {
+        String[] dims = size.split("x");
+        page = Fixtures.page(Fixtures.font(Fixtures.FONT_NAMES[0], fontSize),
+                Integer.parseInt(dims[0]), Integer.parseInt(dims[1]), Fixtures.SEED);
+        bitmap = BinaryImage.of(page);
+    }
+
+    @Setup(Level.Invocation)
+    public void copy() {
+        image = new BufferedImage(page.getColorModel(), page.copyData(null), false, null);
+        bits = bitmap.copy();
+    }
+
+    @Benchmark
+    public BinaryImage bitmap() {
+        ZhangSuen.perform(bits);
+        return bits;
+    }
+
+    @Benchmark
+    public BufferedImage bufferedImage() {
+        ZhangSuen.perform(image);
+        return image;
+    }
+}
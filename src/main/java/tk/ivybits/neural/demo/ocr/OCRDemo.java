@@ -1,15 +1,14 @@
 package tk.ivybits.neural.demo.ocr;
 
+import tk.ivybits.neural.ocr.BinaryImage;
 import tk.ivybits.neural.ocr.GlyphBounds;
-import tk.ivybits.neural.ocr.ZhangSuen;
+import tk.ivybits.neural.ocr.GlyphView;
+import tk.ivybits.neural.ocr.PageRecognizer;
 import tk.ivybits.neural.ocr.GlyphRecognizer;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
-import java.awt.geom.Rectangle2D;
-import java.awt.image.BufferedImage;
-import java.util.HashMap;
 import java.util.List;
 
 public class OCRDemo {
@@ -25,24 +24,15 @@ public class OCRDemo {
         demo.add(draw, BorderLayout.CENTER);
 
         final GlyphRecognizer rec = new GlyphRecognizer(7, 7);
-        final HashMap<Character, BufferedImage> trainingSet = new HashMap<>();
+        final PageRecognizer pageRec = new PageRecognizer(rec);
+        pageRec.setThinGlyphs(true);
 
         JButton recButton = new JButton("Recognize");
         recButton.addActionListener(new AbstractAction() {
             @Override
             public void actionPerformed(ActionEvent actionEvent) {
-                BufferedImage buffer = draw.cloneBuffer();
-                ZhangSuen.perform(buffer);
-                StringBuilder strb = new StringBuilder();
-                for (Rectangle2D bound : GlyphBounds.getBoundingBoxes(buffer, 5)) {
-                    strb.append(rec.recognize(buffer.getSubimage(
-                            (int) bound.getX(),
-                            (int) bound.getY(),
-                            (int) bound.getWidth(),
-                            (int) bound.getHeight())
-                    ));
-                }
-                JOptionPane.showMessageDialog(demo, "Recognized '" + strb + "'", "Recognized...", JOptionPane.INFORMATION_MESSAGE);
+                String text = pageRec.recognizeText(draw.getBuffer());
+                JOptionPane.showMessageDialog(demo, "Recognized '" + text + "'", "Recognized...", JOptionPane.INFORMATION_MESSAGE);
             }
         });
 
@@ -60,30 +50,19 @@ public class OCRDemo {
                 dialog.setVisible(true);
                 dialog.toFront();
 
-                ZhangSuen.perform(draw.getBuffer());
-
-                BufferedImage buffer = draw.cloneBuffer();
-                ZhangSuen.perform(buffer);
-                List<Rectangle2D> charBoxes = GlyphBounds.getBoundingBoxes(buffer, 5);
+                // Decode the canvas once and learn each glyph in place, thinned on its own as recognition does
+                BinaryImage page = BinaryImage.of(draw.getBuffer());
+                List<GlyphView> glyphs = GlyphBounds.getGlyphs(page, 5);
 
                 String str = (String) option.getInputValue();
-                if (str.length() != charBoxes.size())
+                if (str.length() != glyphs.size())
                     JOptionPane.showMessageDialog(demo,
                             "Not equal number of characters, ignoring leftovers",
                             "...",
                             JOptionPane.WARNING_MESSAGE);
-                for (int i = 0; i < charBoxes.size(); i++) {
-                    Rectangle2D bound = charBoxes.get(i);
-                    trainingSet.put(str.charAt(i),
-                            buffer.getSubimage(
-                                    (int) bound.getX(),
-                                    (int) bound.getY(),
-                                    (int) bound.getWidth(),
-                                    (int) bound.getHeight()
-                            )
-                    );
+                for (int i = 0; i < Math.min(str.length(), glyphs.size()); i++) {
+                    rec.learn(str.charAt(i), glyphs.get(i), false);
                 }
-                rec.train(trainingSet);
             }
         });
 
@@ -0,0 +1,157 @@
+package tk.ivybits.neural.network;
+
+/**
+ * The loops behind {@link VecMath}, in plain scalar Java.
+ * <p/>
+ * On Java 17 and later with the {@code jdk.incubator.vector} module added, a subclass built on the Vector API is
+ * loaded from the versioned part of the jar instead; see {@link #load()}. Element-wise kernels give bit-identical
+ * results either way, while sums may differ in their last bits because they are added up in a different order. Every
+ * sum over several vectors is added up the same way as the single vector kernel, so batched and single results always
+ * match.
+ */
+class Kernels {
+    /**
+     * Set to true to always use the scalar kernels.
+     */
+    static final String SCALAR_PROPERTY = "tk.ivybits.neural.scalar";
+
+    // The value of every byte, indexed by its unsigned value
+    private static final double[] BYTE_LEVELS = new double[256];
+
+    static {
+        for (int i = 0; i != BYTE_LEVELS.length; i++) BYTE_LEVELS[i] = (byte) i;
+    }
+
+    /**
+     * @return The vectorized kernels if they can be used, otherwise the scalar ones.
+     */
+    static Kernels load() {
+        if (!Boolean.getBoolean(SCALAR_PROPERTY)) {
+            try {
+                Class<?> vector = Class.forName(Kernels.class.getPackage().getName() + ".VectorKernels");
+                return (Kernels) vector.getDeclaredConstructor().newInstance();
+            } catch (ClassNotFoundException | LinkageError e) {
+                // Older than Java 17, or jdk.incubator.vector is not in the module graph
+            } catch (ReflectiveOperationException e) {
+                // The kernels could not be constructed, so fall back to the scalar ones rather than fail every caller
+            }
+        }
+        return new Kernels();
+    }
+
+    String getName() {
+        return "scalar";
+    }
+
+    double dot(double[] a, double[] b, int off) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[off + i];
+        }
+        return sum;
+    }
+
+    double dot(double[] a, float[] b, int off) {
+        // Four independent sums hide the latency of the conversions and additions
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (int n = a.length & ~3; i < n; i += 4) {
+            s0 += a[i] * b[off + i];
+            s1 += a[i + 1] * b[off + i + 1];
+            s2 += a[i + 2] * b[off + i + 2];
+            s3 += a[i + 3] * b[off + i + 3];
+        }
+        for (; i < a.length; i++) {
+            s0 += a[i] * b[off + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    double dot(double[] a, byte[] b, int off) {
+        // Converting through a table is cheaper than converting each byte with an instruction
+        double[] levels = BYTE_LEVELS;
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (int n = a.length & ~3; i < n; i += 4) {
+            s0 += a[i] * levels[b[off + i] & 0xFF];
+            s1 += a[i + 1] * levels[b[off + i + 1] & 0xFF];
+            s2 += a[i + 2] * levels[b[off + i + 2] & 0xFF];
+            s3 += a[i + 3] * levels[b[off + i + 3] & 0xFF];
+        }
+        for (; i < a.length; i++) {
+            s0 += a[i] * b[off + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    void dot4(double[] a, double[] b, double[] c, double[] d, double[] w, int off, double[] out) {
+        double sa = 0, sb = 0, sc = 0, sd = 0;
+        for (int i = 0; i < a.length; i++) {
+            double x = w[off + i];
+            sa += a[i] * x;
+            sb += b[i] * x;
+            sc += c[i] * x;
+            sd += d[i] * x;
+        }
+        out[0] = sa;
+        out[1] = sb;
+        out[2] = sc;
+        out[3] = sd;
+    }
+
+    void dotRows4(double[] a, double[] w, int off, int stride, double[] out, int outOff) {
+        double sa = 0, sb = 0, sc = 0, sd = 0;
+        for (int i = 0; i < a.length; i++) {
+            double x = a[i];
+            sa += x * w[off + i];
+            sb += x * w[off + stride + i];
+            sc += x * w[off + 2 * stride + i];
+            sd += x * w[off + 3 * stride + i];
+        }
+        out[outOff] = sa;
+        out[outOff + 1] = sb;
+        out[outOff + 2] = sc;
+        out[outOff + 3] = sd;
+    }
+
+    double vectorLength(double[] v, int off, int len) {
+        double rtn = 0.0;
+        for (int i = off; i < off + len; i++) rtn += v[i] * v[i];
+        return rtn;
+    }
+
+    void scale(double[] v, int off, int len, double factor) {
+        for (int i = off; i < off + len; i++) v[i] *= factor;
+    }
+
+    double distanceSquared(double[] a, double scale, double[] b, int off) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            double diff = a[i] * scale - b[off + i];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    void scaleAdd(double[] a, double scale, double[] b, int off, double[] out) {
+        for (int i = 0; i < a.length; i++) {
+            out[i] = a[i] * scale + b[off + i];
+        }
+    }
+
+    void accumulateDifference(double[] a, double scale, double[] b, int off, double[] sums) {
+        for (int i = 0; i < a.length; i++) {
+            sums[off + i] += a[i] * scale - b[off + i];
+        }
+    }
+
+    double addScaled(double[] a, double scale, double[] b, int off, int len) {
+        double length = 0;
+        for (int i = off; i < off + len; i++) {
+            double step = scale * a[i];
+            b[i] += step;
+            length += step * step;
+        }
+        return length;
+    }
+}
@@ -4,8 +4,19 @@ import static java.lang.Math.*;
 
 /**
  * Standard operations on vectors.
+ * <p/>
+ * The loops run on the fastest {@link Kernels} available, picked once at startup; see {@link #getKernels()}.
  */
 public class VecMath {
+    private static final Kernels KERNELS = Kernels.load();
+
+    /**
+     * @return "vector" if the Vector API kernels are in use, otherwise "scalar".
+     */
+    public static String getKernels() {
+        return KERNELS.getName();
+    }
+
     public static double bipolar(double d) {
         return d <= 0 ? -1 : 1;
     }
@@ -15,25 +26,111 @@ public class VecMath {
     }
 
     public static double magnitudeOf(double v[]) {
-        return sqrt(max(vectorLength(v), 1.E-30));
+        return magnitudeOf(v, 0, v.length);
     }
 
     public static void normalize(double v[]) {
-        double m = magnitudeOf(v);
-        for (int i = 0; i < v.length; v[i++] /= m) ;
+        normalize(v, 0, v.length);
     }
 
     public static double vectorLength(double v[]) {
-        double rtn = 0.0;
-        for (double aV : v) rtn += aV * aV;
-        return rtn;
+        return vectorLength(v, 0, v.length);
     }
 
     public static double dot(double a[], double b[]) {
-        double sum = 0;
-        for (int i = 0; i < a.length; i++) {
-            sum += a[i] * b[i];
-        }
-        return sum;
+        return KERNELS.dot(a, b, 0);
+    }
+
+    /**
+     * Calculates the dot product of a vector and a slice of another.
+     *
+     * @param a   The vector.
+     * @param b   The array holding the slice.
+     * @param off The offset of the slice in {@code b}; the slice is as long as {@code a}.
+     */
+    public static double dot(double a[], double b[], int off) {
+        return KERNELS.dot(a, b, off);
+    }
+
+    /**
+     * Calculates the dot product of a vector and a slice of a float32 array.
+     *
+     * @see #dot(double[], double[], int)
+     */
+    public static double dot(double a[], float b[], int off) {
+        return KERNELS.dot(a, b, off);
+    }
+
+    /**
+     * Calculates the dot product of a vector and a slice of a quantized array, before scaling.
+     *
+     * @see #dot(double[], double[], int)
+     */
+    public static double dot(double a[], byte b[], int off) {
+        return KERNELS.dot(a, b, off);
+    }
+
+    /**
+     * Calculates the dot products of four vectors of the same length and a slice of another, reading the slice once.
+     * Each is exactly the product {@link #dot(double[], double[], int)} returns.
+     *
+     * @param out A buffer to receive the four products.
+     */
+    public static void dot4(double a[], double b[], double c[], double d[], double w[], int off, double out[]) {
+        KERNELS.dot4(a, b, c, d, w, off, out);
+    }
+
+    /**
+     * Calculates the dot products of a vector and four evenly spaced slices of another, reading the vector once.
+     * Each is exactly the product {@link #dot(double[], double[], int)} returns.
+     *
+     * @param off    The offset of the first slice.
+     * @param stride The distance between the starts of consecutive slices.
+     * @param out    A buffer to receive the four products from {@code outOff} onwards.
+     */
+    public static void dotRows4(double a[], double w[], int off, int stride, double out[], int outOff) {
+        KERNELS.dotRows4(a, w, off, stride, out, outOff);
+    }
+
+    public static double magnitudeOf(double v[], int off, int len) {
+        return sqrt(max(vectorLength(v, off, len), 1.E-30));
+    }
+
+    public static void normalize(double v[], int off, int len) {
+        KERNELS.scale(v, off, len, 1.0 / magnitudeOf(v, off, len));
+    }
+
+    public static double vectorLength(double v[], int off, int len) {
+        return KERNELS.vectorLength(v, off, len);
+    }
+
+    /**
+     * Calculates the squared distance between a scaled vector and a slice of another, as long as {@code a}.
+     */
+    public static double distanceSquared(double a[], double scale, double b[], int off) {
+        return KERNELS.distanceSquared(a, scale, b, off);
+    }
+
+    /**
+     * Adds a scaled vector to a slice of another, as long as {@code a}, into {@code out}.
+     */
+    public static void scaleAdd(double a[], double scale, double b[], int off, double out[]) {
+        KERNELS.scaleAdd(a, scale, b, off, out);
+    }
+
+    /**
+     * Adds the difference between a scaled vector and a slice of another to the same slice of {@code sums}.
+     */
+    public static void accumulateDifference(double a[], double scale, double b[], int off, double sums[]) {
+        KERNELS.accumulateDifference(a, scale, b, off, sums);
+    }
+
+    /**
+     * Adds a scaled slice of one array to the same slice of another.
+     *
+     * @return The squared length of the scaled slice.
+     */
+    public static double addScaled(double a[], double scale, double b[], int off, int len) {
+        return KERNELS.addScaled(a, scale, b, off, len);
     }
 }
@@ -0,0 +1,42 @@
+package tk.ivybits.neural.network.kohonen;
+
+import lombok.Getter;
+
+import tk.ivybits.neural.network.VecMath;
+
+/**
+ * A weight matrix held in a row-major {@code double[]} on the heap.
+ */
+public final class ArrayWeightMatrix implements WeightMatrix {
+    @Getter
+    private final int rows, columns;
+    private final double[] weights;
+
+    /**
+     * @param rows    The number of rows.
+     * @param columns The number of weights per row.
+     * @param weights The row-major weights. They are copied.
+     */
+    public ArrayWeightMatrix(int rows, int columns, double[] weights) {
+        if (weights.length != rows * columns)
+            throw new IllegalArgumentException("expected " + rows * columns + " weights, got " + weights.length);
+        this.rows = rows;
+        this.columns = columns;
+        this.weights = weights.clone();
+    }
+
+    @Override
+    public double get(int row, int column) {
+        return weights[row * columns + column];
+    }
+
+    @Override
+    public double dot(int row, double[] input) {
+        return VecMath.dot(input, weights, row * columns);
+    }
+
+    // Exposed to the batched kernels of KohonenModel, which must not write to it
+    double[] array() {
+        return weights;
+    }
+}
@@ -0,0 +1,133 @@
+package tk.ivybits.neural.network.kohonen;
+
+import lombok.Getter;
+
+import tk.ivybits.neural.network.VecMath;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * A weight matrix read in place from an NIO buffer, such as a memory-mapped model file.
+ * <p/>
+ * Single weights are read with absolute gets, so the buffer's position is never touched and a matrix may be shared
+ * between threads. Dot products copy the row out through a view of the buffer owned by the calling thread, in bulk,
+ * and run on the same {@link VecMath} kernels as a matrix on the heap.
+ */
+public abstract class BufferWeightMatrix implements WeightMatrix {
+    @Getter
+    protected final int rows, columns;
+
+    protected BufferWeightMatrix(int rows, int columns, Buffer buffer) {
+        if (buffer.remaining() < rows * columns)
+            throw new IllegalArgumentException("expected " + rows * columns + " weights, got " + buffer.remaining());
+        this.rows = rows;
+        this.columns = columns;
+    }
+
+    /**
+     * @return A matrix reading row-major float64 weights from the buffer's position onwards.
+     */
+    public static BufferWeightMatrix of(int rows, int columns, DoubleBuffer buffer) {
+        final DoubleBuffer weights = buffer.slice();
+        return new BufferWeightMatrix(rows, columns, weights) {
+            private final ThreadLocal<Reader<DoubleBuffer, double[]>> readers =
+                    new ThreadLocal<Reader<DoubleBuffer, double[]>>() {
+                        @Override
+                        protected Reader<DoubleBuffer, double[]> initialValue() {
+                            return new Reader<>(weights.duplicate(), new double[columns]);
+                        }
+                    };
+
+            @Override
+            public double get(int row, int column) {
+                return weights.get(row * columns + column);
+            }
+
+            @Override
+            public double dot(int row, double[] input) {
+                Reader<DoubleBuffer, double[]> reader = readers.get();
+                reader.view.position(row * columns);
+                reader.view.get(reader.row, 0, input.length);
+                return VecMath.dot(input, reader.row, 0);
+            }
+        };
+    }
+
+    /**
+     * @return A matrix reading row-major float32 weights from the buffer's position onwards.
+     */
+    public static BufferWeightMatrix of(int rows, int columns, FloatBuffer buffer) {
+        final FloatBuffer weights = buffer.slice();
+        return new BufferWeightMatrix(rows, columns, weights) {
+            private final ThreadLocal<Reader<FloatBuffer, float[]>> readers =
+                    new ThreadLocal<Reader<FloatBuffer, float[]>>() {
+                        @Override
+                        protected Reader<FloatBuffer, float[]> initialValue() {
+                            return new Reader<>(weights.duplicate(), new float[columns]);
+                        }
+                    };
+
+            @Override
+            public double get(int row, int column) {
+                return weights.get(row * columns + column);
+            }
+
+            @Override
+            public double dot(int row, double[] input) {
+                Reader<FloatBuffer, float[]> reader = readers.get();
+                reader.view.position(row * columns);
+                reader.view.get(reader.row, 0, input.length);
+                return VecMath.dot(input, reader.row, 0);
+            }
+        };
+    }
+
+    /**
+     * @param weights Row-major int8 weights, from the buffer's position onwards.
+     * @param scales  The float32 scale of each row, from the buffer's position onwards.
+     * @return A matrix reading quantized weights from the buffers.
+     * @see ByteWeightMatrix
+     */
+    public static BufferWeightMatrix of(int rows, int columns, ByteBuffer weights, FloatBuffer scales) {
+        final ByteBuffer bytes = weights.slice();
+        final FloatBuffer steps = scales.slice();
+        if (steps.remaining() < rows)
+            throw new IllegalArgumentException("expected " + rows + " scales, got " + steps.remaining());
+        return new BufferWeightMatrix(rows, columns, bytes) {
+            private final ThreadLocal<Reader<ByteBuffer, byte[]>> readers =
+                    new ThreadLocal<Reader<ByteBuffer, byte[]>>() {
+                        @Override
+                        protected Reader<ByteBuffer, byte[]> initialValue() {
+                            return new Reader<>(bytes.duplicate(), new byte[columns]);
+                        }
+                    };
+
+            @Override
+            public double get(int row, int column) {
+                return bytes.get(row * columns + column) * (double) steps.get(row);
+            }
+
+            @Override
+            public double dot(int row, double[] input) {
+                Reader<ByteBuffer, byte[]> reader = readers.get();
+                reader.view.position(row * columns);
+                reader.view.get(reader.row, 0, input.length);
+                return VecMath.dot(input, reader.row, 0) * steps.get(row);
+            }
+        };
+    }
+
+    // A thread's own view of the weights, whose position it is free to move, and a row copied out of it
+    private static final class Reader<B extends Buffer, A> {
+        private final B view;
+        private final A row;
+
+        Reader(B view, A row) {
+            this.view = view;
+            this.row = row;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package tk.ivybits.neural.network.kohonen;
+
+import lombok.Getter;
+
+import tk.ivybits.neural.network.VecMath;
+
+/**
+ * A weight matrix quantized to one signed byte per weight, with a scale per row.
+ * <p/>
+ * Each row is scaled so that its largest weight maps to 127, which keeps the rounding error of every weight within
+ * half a step of its own row. A matrix takes about an eighth of the memory of an {@link ArrayWeightMatrix}.
+ */
+public final class ByteWeightMatrix implements WeightMatrix {
+    @Getter
+    private final int rows, columns;
+    private final byte[] weights;
+    private final float[] scales;
+
+    /**
+     * @param source The matrix to quantize.
+     */
+    public ByteWeightMatrix(WeightMatrix source) {
+        this.rows = source.getRows();
+        this.columns = source.getColumns();
+        this.weights = new byte[rows * columns];
+        this.scales = new float[rows];
+        for (int row = 0; row != rows; row++) {
+            double largest = 0;
+            for (int column = 0; column != columns; column++) {
+                largest = Math.max(largest, Math.abs(source.get(row, column)));
+            }
+            float scale = (float) (largest / 127);
+            scales[row] = scale;
+            if (scale == 0) continue;
+            for (int column = 0; column != columns; column++) {
+                weights[row * columns + column] = (byte) Math.round(source.get(row, column) / scale);
+            }
+        }
+    }
+
+    /**
+     * @return The value of one step of the given row.
+     */
+    public float getScale(int row) {
+        return scales[row];
+    }
+
+    /**
+     * @return The weight at the given position in steps of its row's scale.
+     */
+    public byte getQuantized(int row, int column) {
+        return weights[row * columns + column];
+    }
+
+    @Override
+    public double get(int row, int column) {
+        return weights[row * columns + column] * (double) scales[row];
+    }
+
+    @Override
+    public double dot(int row, double[] input) {
+        return VecMath.dot(input, weights, row * columns) * scales[row];
+    }
+}
@@ -0,0 +1,38 @@
+package tk.ivybits.neural.network.kohonen;
+
+import lombok.Getter;
+
+import tk.ivybits.neural.network.VecMath;
+
+/**
+ * A weight matrix held in a row-major {@code float[]} on the heap, at half the size of an {@link ArrayWeightMatrix}.
+ */
+public final class FloatWeightMatrix implements WeightMatrix {
+    @Getter
+    private final int rows, columns;
+    private final float[] weights;
+
+    /**
+     * @param source The matrix to copy, rounding every weight to the nearest float.
+     */
+    public FloatWeightMatrix(WeightMatrix source) {
+        this.rows = source.getRows();
+        this.columns = source.getColumns();
+        this.weights = new float[rows * columns];
+        for (int row = 0; row != rows; row++) {
+            for (int column = 0; column != columns; column++) {
+                weights[row * columns + column] = (float) source.get(row, column);
+            }
+        }
+    }
+
+    @Override
+    public double get(int row, int column) {
+        return weights[row * columns + column];
+    }
+
+    @Override
+    public double dot(int row, double[] input) {
+        return VecMath.dot(input, weights, row * columns);
+    }
+}
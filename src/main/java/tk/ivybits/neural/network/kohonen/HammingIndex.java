@@ -0,0 +1,89 @@
+package tk.ivybits.neural.network.kohonen;
+
+/**
+ * A prefilter for models trained on two-valued inputs, such as downsampled glyphs.
+ * <p/>
+ * Every neuron is reduced to a signature holding the sign of each of its weights, packed 64 to a {@code long}. An
+ * input is reduced the same way and compared against every signature by counting differing bits, which costs one
+ * {@link Long#bitCount(long)} per 64 inputs instead of 64 multiplications. The neurons with the fewest differing bits
+ * are then scored exactly, so the winner is only missed when it is not among them.
+ */
+public class HammingIndex implements NeuronIndex {
+    private final int inputNeuronCount, outputNeuronCount;
+    private final int words;
+    private final int rerank;
+    private final long[] signatures;
+
+    /**
+     * @param model  The model to index. Its weights must not change afterwards.
+     * @param rerank The number of nearest signatures to score exactly.
+     */
+    public HammingIndex(KohonenModel<?> model, int rerank) {
+        if (rerank < 1)
+            throw new IllegalArgumentException("rerank must be positive");
+        this.inputNeuronCount = model.getInputNeuronCount();
+        this.outputNeuronCount = model.getOutputNeuronCount();
+        this.words = (inputNeuronCount + 63) >>> 6;
+        this.rerank = rerank;
+
+        WeightMatrix weights = model.getWeights();
+        signatures = new long[outputNeuronCount * words];
+        for (int n = 0; n != outputNeuronCount; n++) {
+            for (int i = 0; i != inputNeuronCount; i++) {
+                if (weights.get(n, i) > 0) signatures[n * words + (i >>> 6)] |= 1L << i;
+            }
+        }
+    }
+
+    /**
+     * Packs the signs of a vector as the index does.
+     *
+     * @return One bit per element, set where the element is positive, 64 to a {@code long}.
+     */
+    public static long[] pack(double[] vector) {
+        long[] bits = new long[(vector.length + 63) >>> 6];
+        for (int i = 0; i != vector.length; i++) {
+            if (vector[i] > 0) bits[i >>> 6] |= 1L << i;
+        }
+        return bits;
+    }
+
+    @Override
+    public int[] candidates(double[] input) {
+        return candidates(pack(input));
+    }
+
+    /**
+     * @param bits The signs of the input vector, as packed by {@link #pack(double[])}.
+     * @return The neurons whose signatures differ from the input in the fewest bits in ascending order, or null if
+     * there are no more neurons than would be reranked.
+     */
+    public int[] candidates(long[] bits) {
+        if (rerank >= outputNeuronCount) return null;
+
+        // Histogram the distances to find the largest one which still makes the cut
+        int[] histogram = new int[inputNeuronCount + 1];
+        for (int n = 0; n != outputNeuronCount; n++) {
+            histogram[distance(bits, n)]++;
+        }
+        int cutoff = 0, below = 0;
+        while (below + histogram[cutoff] < rerank) below += histogram[cutoff++];
+
+        // Take every neuron nearer than the cutoff, and the lowest neurons at it
+        int[] candidates = new int[rerank];
+        int count = 0, atCutoff = rerank - below;
+        for (int n = 0; n != outputNeuronCount && count != rerank; n++) {
+            int distance = distance(bits, n);
+            if (distance < cutoff || distance == cutoff && atCutoff-- > 0) candidates[count++] = n;
+        }
+        return candidates;
+    }
+
+    private int distance(long[] bits, int neuron) {
+        int distance = 0, off = neuron * words;
+        for (int w = 0; w != words; w++) {
+            distance += Long.bitCount(bits[w] ^ signatures[off + w]);
+        }
+        return distance;
+    }
+}
@@ -0,0 +1,156 @@
+package tk.ivybits.neural.network.kohonen;
+
+import java.util.*;
+
+import static tk.ivybits.neural.network.VecMath.*;
+
+/**
+ * An approximate nearest-neuron index for models with large output layers, by random-hyperplane locality-sensitive
+ * hashing.
+ * <p/>
+ * Each of several tables hashes a vector to the side it lies on of each of a few random hyperplanes through the
+ * origin. Vectors at a small angle to each other, such as an input and the neuron it wins, usually hash alike, so
+ * only the neurons sharing a bucket with the input in some table are scored. Besides its own bucket, each table is
+ * also probed at the buckets across the hyperplanes the input lies closest to.
+ * <p/>
+ * More tables and probes find the true winner more often; more hyperplanes per table make buckets smaller and
+ * search faster. If fewer than a minimum number of candidates are found, the search falls back to scoring every
+ * neuron.
+ */
+public class HyperplaneIndex implements NeuronIndex {
+    private final int inputNeuronCount;
+    private final int tables, planes, probes, minCandidates;
+    // Row-major hyperplane normals, planes per table
+    private final double[] normals;
+    private final List<HashMap<Integer, int[]>> buckets;
+
+    /**
+     * @param model         The model to index. Its weights must not change afterwards.
+     * @param tables        The number of hash tables.
+     * @param planes        The number of hyperplanes per table, from 1..30.
+     * @param probes        The number of neighbouring buckets probed per table besides the input's own.
+     * @param minCandidates The number of candidates below which every neuron is scored instead.
+     * @param seed          The seed of the hyperplanes.
+     */
+    public HyperplaneIndex(KohonenModel<?> model, int tables, int planes, int probes, int minCandidates, long seed) {
+        if (tables < 1)
+            throw new IllegalArgumentException("tables must be positive");
+        if (planes < 1 || planes > 30)
+            throw new IllegalArgumentException("planes must be from 1 to 30");
+        if (probes < 0 || probes > planes)
+            throw new IllegalArgumentException("probes must be from 0 to the number of planes");
+        this.inputNeuronCount = model.getInputNeuronCount();
+        this.tables = tables;
+        this.planes = planes;
+        this.probes = probes;
+        this.minCandidates = minCandidates;
+
+        // Gaussian normals make the hyperplanes uniformly distributed in direction
+        Random random = new Random(seed);
+        normals = new double[tables * planes * inputNeuronCount];
+        for (int i = 0; i != normals.length; i++) {
+            normals[i] = random.nextGaussian();
+        }
+
+        WeightMatrix weights = model.getWeights();
+        List<HashMap<Integer, List<Integer>>> building = new ArrayList<>(tables);
+        for (int t = 0; t != tables; t++) building.add(new HashMap<Integer, List<Integer>>());
+        double[] row = new double[inputNeuronCount];
+        double[] projections = new double[tables * planes];
+        for (int n = 0; n != model.getOutputNeuronCount(); n++) {
+            for (int i = 0; i != inputNeuronCount; i++) {
+                row[i] = weights.get(n, i);
+            }
+            project(row, projections);
+            for (int t = 0; t != tables; t++) {
+                Integer key = key(projections, t);
+                List<Integer> bucket = building.get(t).get(key);
+                if (bucket == null) building.get(t).put(key, bucket = new ArrayList<>());
+                bucket.add(n);
+            }
+        }
+
+        buckets = new ArrayList<>(tables);
+        for (HashMap<Integer, List<Integer>> table : building) {
+            HashMap<Integer, int[]> packed = new HashMap<>(table.size() * 2);
+            for (Map.Entry<Integer, List<Integer>> bucket : table.entrySet()) {
+                int[] neurons = new int[bucket.getValue().size()];
+                for (int i = 0; i != neurons.length; i++) neurons[i] = bucket.getValue().get(i);
+                packed.put(bucket.getKey(), neurons);
+            }
+            buckets.add(packed);
+        }
+    }
+
+    /**
+     * Creates an index of 8 tables of 12 hyperplanes, probing 2 neighbouring buckets per table.
+     */
+    public HyperplaneIndex(KohonenModel<?> model, long seed) {
+        this(model, 8, 12, 2, 1, seed);
+    }
+
+    private void project(double[] vector, double[] projections) {
+        for (int p = 0; p != projections.length; p++) {
+            projections[p] = dot(vector, normals, p * inputNeuronCount);
+        }
+    }
+
+    private int key(double[] projections, int table) {
+        int key = 0;
+        for (int p = 0; p != planes; p++) {
+            if (projections[table * planes + p] >= 0) key |= 1 << p;
+        }
+        return key;
+    }
+
+    @Override
+    public int[] candidates(double[] input) {
+        double[] projections = new double[tables * planes];
+        project(input, projections);
+
+        List<int[]> found = new ArrayList<>();
+        int total = 0;
+        for (int t = 0; t != tables; t++) {
+            HashMap<Integer, int[]> table = buckets.get(t);
+            int key = key(projections, t);
+            int[] bucket = table.get(key);
+            if (bucket != null) {
+                found.add(bucket);
+                total += bucket.length;
+            }
+            // Probe across the hyperplanes the input lies closest to
+            for (int probe = 0, used = 0; probe != probes; probe++) {
+                int closest = -1;
+                double distance = Double.MAX_VALUE;
+                for (int p = 0; p != planes; p++) {
+                    if ((used & 1 << p) != 0) continue;
+                    if (Math.abs(projections[t * planes + p]) < distance) {
+                        distance = Math.abs(projections[t * planes + p]);
+                        closest = p;
+                    }
+                }
+                used |= 1 << closest;
+                bucket = table.get(key ^ 1 << closest);
+                if (bucket != null) {
+                    found.add(bucket);
+                    total += bucket.length;
+                }
+            }
+        }
+        if (total < minCandidates) return null;
+
+        int[] candidates = new int[total];
+        total = 0;
+        for (int[] bucket : found) {
+            System.arraycopy(bucket, 0, candidates, total, bucket.length);
+            total += bucket.length;
+        }
+        // Drop neurons found in several buckets
+        Arrays.sort(candidates);
+        int unique = 0;
+        for (int i = 0; i != candidates.length; i++) {
+            if (i == 0 || candidates[i] != candidates[i - 1]) candidates[unique++] = candidates[i];
+        }
+        return unique == candidates.length ? candidates : Arrays.copyOf(candidates, unique);
+    }
+}
@@ -0,0 +1,302 @@
+package tk.ivybits.neural.network.kohonen;
+
+import lombok.Getter;
+
+import java.util.*;
+
+import static java.lang.Math.*;
+import static tk.ivybits.neural.network.VecMath.*;
+
+/**
+ * An immutable snapshot of a trained {@link KohonenNetwork}.
+ * <p/>
+ * A model holds its own copy of the neuron map and a weight matrix which nothing writes to, so a single instance can
+ * serve any number of threads. Methods which report neuron activations write them to a buffer supplied by the
+ * caller.
+ */
+public final class KohonenModel<T> {
+    // Number of inputs and neurons processed together by the batched winner search
+    private static final int INPUT_BLOCK = 4, NEURON_BLOCK = 64;
+
+    @Getter
+    private final int inputNeuronCount, outputNeuronCount;
+    @Getter
+    private final WeightMatrix weights;
+    /**
+     * The index narrowing down the neurons scored for each input, or null to score every neuron.
+     */
+    @Getter
+    private final NeuronIndex index;
+    private final Object[] neuronMap;
+    // The weights of an ArrayWeightMatrix, read directly
+    private final double[] array;
+
+    /**
+     * @param in        The number of input neurons.
+     * @param out       The number of output neurons.
+     * @param weights   The row-major weight matrix, with {@code in + 1} weights per output neuron. It is copied.
+     * @param neuronMap The value each output neuron stands for. It is copied.
+     */
+    public KohonenModel(int in, int out, double[] weights, T[] neuronMap) {
+        this(new ArrayWeightMatrix(out, in + 1, weights), neuronMap);
+    }
+
+    /**
+     * @param weights   The weight matrix, with one row per output neuron. It must not be modified afterwards.
+     * @param neuronMap The value each output neuron stands for. It is copied.
+     */
+    public KohonenModel(WeightMatrix weights, T[] neuronMap) {
+        this(weights, Arrays.copyOf(neuronMap, weights.getRows(), Object[].class), null);
+    }
+
+    private KohonenModel(WeightMatrix weights, Object[] neuronMap, NeuronIndex index) {
+        this.inputNeuronCount = weights.getColumns() - 1;
+        this.outputNeuronCount = weights.getRows();
+        this.weights = weights;
+        this.neuronMap = neuronMap;
+        this.index = index;
+        this.array = weights instanceof ArrayWeightMatrix ? ((ArrayWeightMatrix) weights).array() : null;
+    }
+
+    /**
+     * @param index The index to narrow down the neurons scored for each input, or null to score every neuron.
+     * @return A model sharing this model's weights and neuron map which searches through the given index.
+     */
+    public KohonenModel<T> withIndex(NeuronIndex index) {
+        return new KohonenModel<>(weights, neuronMap, index);
+    }
+
+    /**
+     * @return A model sharing this model's neuron map and index whose weights are held at the given precision.
+     * Activations stay within the rounding error of the precision.
+     */
+    public KohonenModel<T> withPrecision(WeightPrecision precision) {
+        return new KohonenModel<>(precision.copy(weights), neuronMap, index);
+    }
+
+    /**
+     * @return The value the given output neuron stands for, or null if it stands for none.
+     */
+    @SuppressWarnings("unchecked")
+    public T getLabel(int neuron) {
+        return (T) neuronMap[neuron];
+    }
+
+    public T recall(double[] input) {
+        return getLabel(winner(input, null));
+    }
+
+    /**
+     * Recalls the best matching values for an input vector.
+     *
+     * @param input The input vector.
+     * @param k     The number of values to return.
+     * @return Up to {@code k} distinct values, best first, each with the activation of its strongest neuron.
+     */
+    public List<Match<T>> recall(double[] input, int k) {
+        double[] activations = new double[outputNeuronCount];
+        int[] candidates = index != null ? index.candidates(input) : null;
+        score(input, candidates, activations);
+        return top(activations, candidates, neuronMap, k);
+    }
+
+    /**
+     * Picks the best values from the activations of a set of neurons.
+     *
+     * @param candidates The neurons which were scored, or null if all were.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> List<Match<T>> top(double[] activations, int[] candidates, Object[] neuronMap, int k) {
+        // The strongest neuron of each value
+        HashMap<Object, Match<T>> strongest = new HashMap<>();
+        int count = candidates != null ? candidates.length : activations.length;
+        for (int c = 0; c != count; c++) {
+            int n = candidates != null ? candidates[c] : c;
+            Object label = neuronMap[n];
+            if (label == null) continue;
+            Match<T> match = strongest.get(label);
+            if (match == null || activations[n] > match.getConfidence())
+                strongest.put(label, new Match<>((T) label, n, activations[n]));
+        }
+
+        List<Match<T>> matches = new ArrayList<>(strongest.values());
+        Collections.sort(matches, new Comparator<Match<T>>() {
+            @Override
+            public int compare(Match<T> a, Match<T> b) {
+                int order = Double.compare(b.getConfidence(), a.getConfidence());
+                return order != 0 ? order : Integer.compare(a.getNeuron(), b.getNeuron());
+            }
+        });
+        return matches.size() > k ? new ArrayList<>(matches.subList(0, k)) : matches;
+    }
+
+    /**
+     * Recalls a batch of input vectors.
+     *
+     * @param inputs The input vectors.
+     * @return The recalled value of each input vector, in order.
+     */
+    public List<T> recall(double[][] inputs) {
+        List<T> recalled = new ArrayList<>(inputs.length);
+        for (int winner : winners(inputs)) {
+            recalled.add(getLabel(winner));
+        }
+        return recalled;
+    }
+
+    /**
+     * Presents an input vector to the model.
+     *
+     * @param input  The input vector.
+     * @param output A buffer of at least {@link #getOutputNeuronCount()} elements to receive the activation of every
+     *               output neuron, or null if they are not needed. Neurons ruled out by the index are left alone.
+     * @return The neuron which fired.
+     */
+    public int winner(double[] input, double[] output) {
+        return winner(input, index != null ? index.candidates(input) : null, output);
+    }
+
+    /**
+     * Presents an input vector to the model, scoring neurons a caller already picked rather than asking the index,
+     * such as those {@link HammingIndex#candidates(long[])} picks from signs packed while the input was made.
+     *
+     * @param candidates The neurons to score in ascending order, or null to score every neuron.
+     * @see #winner(double[], double[])
+     */
+    public int winner(double[] input, int[] candidates, double[] output) {
+        if (candidates == null && array != null)
+            return winner(array, inputNeuronCount + 1, outputNeuronCount, input, output);
+        return score(input, candidates, output);
+    }
+
+    /**
+     * Scores a set of neurons against an input vector.
+     *
+     * @param candidates The neurons to score in ascending order, or null to score all of them.
+     * @param output     A buffer to receive the activation of each scored neuron, or null.
+     * @return The scored neuron with the greatest activation.
+     */
+    private int score(double[] input, int[] candidates, double[] output) {
+        double biggest = Double.MIN_VALUE;
+        double normalizationFactor = 1.0 / magnitudeOf(input);
+        int count = candidates != null ? candidates.length : outputNeuronCount;
+        int winning = candidates != null && count != 0 ? candidates[0] : 0;
+        for (int c = 0; c != count; c++) {
+            int i = candidates != null ? candidates[c] : c;
+            double dot = array != null ? dot(input, array, i * (inputNeuronCount + 1)) : weights.dot(i, input);
+            double weight = (dot * normalizationFactor + 1) * 0.5;
+            if (output != null) output[i] = clamp(weight, 0, 1);
+            if (weight > biggest) {
+                biggest = weight;
+                winning = i;
+            }
+        }
+        return winning;
+    }
+
+    /**
+     * Presents a batch of input vectors to the model.
+     *
+     * @param inputs The input vectors.
+     * @return The neuron which fired for each input vector, in order.
+     */
+    public int[] winners(double[][] inputs) {
+        if (index == null && array != null)
+            return winners(array, inputNeuronCount + 1, inputNeuronCount, outputNeuronCount, inputs);
+
+        int[] winning = new int[inputs.length];
+        for (int i = 0; i != inputs.length; i++) {
+            winning[i] = winner(inputs[i], null);
+        }
+        return winning;
+    }
+
+    /**
+     * Finds the output neuron with the greatest activation for an input vector.
+     */
+    static int winner(double[] weights, int stride, int outputNeuronCount, double[] input, double[] output) {
+        double biggest = Double.MIN_VALUE;
+        double normalizationFactor = 1.0 / magnitudeOf(input);
+        // The winning neuron
+        int winning = 0;
+        // With an output buffer, the dot products of four neurons at a time are put straight into it
+        int batched = output != null ? outputNeuronCount & ~3 : 0;
+        for (int i = 0; i < batched; i += 4) {
+            dotRows4(input, weights, i * stride, stride, output, i);
+        }
+        for (int i = 0; i < outputNeuronCount; i++) {
+            // To calculate the weight of an output neuron,
+            // 1. get the dot product of the input and weight vectors
+            // 2. multiply by the normalization factor
+            // 3. map to bipolar (add 1 and / by 2)
+            double dot = i < batched ? output[i] : dot(input, weights, i * stride);
+            double weight = (dot * normalizationFactor + 1) * 0.5;
+            // Clamp to 0, 1
+            if (output != null) output[i] = clamp(weight, 0, 1);
+            if (weight > biggest) {
+                biggest = weight;
+                winning = i;
+            }
+        }
+
+        return winning;
+    }
+
+    /**
+     * Finds the output neuron with the greatest activation for each of a batch of input vectors.
+     * <p/>
+     * The weight matrix is swept in blocks of neurons against blocks of inputs, so each weight row is loaded once per
+     * block of inputs rather than once per input. Every dot product is exactly the one
+     * {@link #winner(double[], int, int, double[], double[])} calculates, so the winners are identical.
+     */
+    static int[] winners(double[] weights, int stride, int inputNeuronCount, int outputNeuronCount, double[][] inputs) {
+        int n = inputs.length;
+        int[] winning = new int[n];
+        double[] biggest = new double[n];
+        double[] normalizationFactors = new double[n];
+        for (int i = 0; i != n; i++) {
+            biggest[i] = Double.MIN_VALUE;
+            normalizationFactors[i] = 1.0 / magnitudeOf(inputs[i]);
+        }
+
+        double[] dots = new double[INPUT_BLOCK];
+        for (int i0 = 0; i0 < n; i0 += INPUT_BLOCK) {
+            int i1 = min(i0 + INPUT_BLOCK, n);
+            for (int j0 = 0; j0 < outputNeuronCount; j0 += NEURON_BLOCK) {
+                int j1 = min(j0 + NEURON_BLOCK, outputNeuronCount);
+                if (i1 - i0 == INPUT_BLOCK) {
+                    winners4(weights, stride, inputs, i0, j0, j1, dots, normalizationFactors, biggest, winning);
+                } else {
+                    for (int i = i0; i != i1; i++) {
+                        for (int j = j0; j != j1; j++) {
+                            consider(i, j, dot(inputs[i], weights, j * stride), normalizationFactors, biggest, winning);
+                        }
+                    }
+                }
+            }
+        }
+        return winning;
+    }
+
+    // Scores four inputs against a block of neurons, reading each weight once for all four
+    private static void winners4(double[] weights, int stride, double[][] inputs, int i, int j0, int j1,
+                                 double[] dots, double[] normalizationFactors, double[] biggest, int[] winning) {
+        double[] a = inputs[i], b = inputs[i + 1], c = inputs[i + 2], d = inputs[i + 3];
+        for (int j = j0; j != j1; j++) {
+            dot4(a, b, c, d, weights, j * stride, dots);
+            consider(i, j, dots[0], normalizationFactors, biggest, winning);
+            consider(i + 1, j, dots[1], normalizationFactors, biggest, winning);
+            consider(i + 2, j, dots[2], normalizationFactors, biggest, winning);
+            consider(i + 3, j, dots[3], normalizationFactors, biggest, winning);
+        }
+    }
+
+    private static void consider(int i, int j, double dot, double[] normalizationFactors, double[] biggest,
+                                 int[] winning) {
+        double weight = (dot * normalizationFactors[i] + 1) * 0.5;
+        if (weight > biggest[i]) {
+            biggest[i] = weight;
+            winning[i] = j;
+        }
+    }
+}
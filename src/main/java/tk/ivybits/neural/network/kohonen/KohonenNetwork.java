@@ -1,78 +1,342 @@
 package tk.ivybits.neural.network.kohonen;
 
-import lombok.Data;
 import lombok.Getter;
+import lombok.Setter;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static java.lang.Math.*;
 import static tk.ivybits.neural.network.kohonen.KohonenNetwork.LearnMethod.*;
 import static tk.ivybits.neural.network.VecMath.*;
 
 // Based off Jeff Heaton's neural network examples - heatonresearch.org
-@Data
 public class KohonenNetwork<T> {
     public enum LearnMethod {
         ADDITIVE, SUBTRACTIVE
     }
 
-    protected double[][] outputWeights;
+    /**
+     * The output weight matrix, stored row-major with one row of {@link #weightStride} weights per output neuron.
+     */
+    protected double[] outputWeights;
+    @Getter
     protected double error;
     @Getter
-    protected final int inputNeuronCount, outputNeuronCount;
+    protected final int inputNeuronCount;
+    /**
+     * The number of output neurons, which grows as {@link #update(Object, double[], double)} learns new values.
+     */
+    @Getter
+    protected int outputNeuronCount;
+    @Getter
+    protected final int weightStride;
     @Getter
     protected double[] output;
-    protected HashMap<T, double[]> samples = new HashMap<>();
+    /**
+     * The training sets, in the order they were queued. A value may have any number of training sets.
+     * <p/>
+     * Only {@link #queueData(Object, double[])} and {@link #update(Object, double[], double)} add to the training
+     * sets, each under the network's lock and in step with {@link #sampleValues}, so that neither list is ever swapped
+     * or grown on its own while an update is growing the output layer.
+     */
+    protected List<double[]> samples = new ArrayList<>();
+    /**
+     * The value each training set stands for, at the same index as the training set.
+     */
+    protected List<T> sampleValues = new ArrayList<>();
     protected T[] _neuronMap;
+    /**
+     * The source of the initial weights, reseeded by a schedule with a {@link TrainingSchedule#getSeed() seed}.
+     * Training is reproducible given the same seed, training sets and {@link #pool}.
+     */
+    protected Random random = new Random();
+    /**
+     * The pool training epochs are sharded across, or null to train on the calling thread.
+     * <p/>
+     * The training sets are split into one contiguous shard per thread of the pool, each accumulating its own win
+     * counts and corrections, which are then summed in shard order. Results therefore depend on the parallelism of
+     * the pool but not on how its threads are scheduled.
+     */
+    @Getter
+    @Setter
+    protected ForkJoinPool pool;
+    /**
+     * The statistics of the last training run.
+     */
+    @Getter
+    protected TrainingStats stats;
+    // Buffers reused by every epoch of every training run
+    private int[] won;
+    private double[] corrections, bestWeights, evaluated;
+    private Shard[] shards;
+    private Fork fork;
+    // The neuron each training set last recalled and its activation, kept alongside the neuron map so that it can
+    // be refreshed after an update without presenting every training set to every neuron again
+    private ArrayList<Recall> recalls;
+    // Values which neurons of a network rebuilt from a model stood for, which have no training set to recall them
+    private Object[] modelLabels;
 
     public KohonenNetwork(int in, int out) {
         this.inputNeuronCount = in;
         this.outputNeuronCount = out;
         this.output = new double[out];
-        outputWeights = new double[outputNeuronCount][inputNeuronCount + 1];
+        this.weightStride = in + 1;
+        outputWeights = new double[outputNeuronCount * weightStride];
+    }
+
+    /**
+     * Rebuilds a network from a model, so that it can be updated without the training sets it was trained on.
+     * Neurons keep standing for the values they stood for in the model until a training set claims them, and the
+     * values are lost if the network is retrained.
+     *
+     * @param model The model.
+     */
+    public KohonenNetwork(KohonenModel<T> model) {
+        this(model.getInputNeuronCount(), model.getOutputNeuronCount());
+        WeightMatrix weights = model.getWeights();
+        modelLabels = new Object[outputNeuronCount];
+        for (int n = 0; n != outputNeuronCount; n++) {
+            for (int i = 0; i != weightStride; i++) {
+                outputWeights[n * weightStride + i] = weights.get(n, i);
+            }
+            modelLabels[n] = model.getLabel(n);
+        }
     }
 
-    public T[] getNeuronMap() {
+    /**
+     * Maps every output neuron to the value it stands for: the value most of the training sets it wins stand for,
+     * ties going to the value which reached the count last. Neurons which win no training set stand for nothing.
+     *
+     * @return The value of each output neuron, or null.
+     */
+    public synchronized T[] getNeuronMap() {
         if (_neuronMap != null) return _neuronMap;
-        Object map[] = new Object[samples.size()];
+        recalls = new ArrayList<>(samples.size());
+        for (double[] set : samples) {
+            int best = winner(set, null);
+            recalls.add(new Recall(best, activation(set, best)));
+        }
+        return _neuronMap = mapNeurons();
+    }
+
+    @SuppressWarnings("unchecked")
+    private T[] mapNeurons() {
+        Object map[] = modelLabels != null
+                ? Arrays.copyOf(modelLabels, outputNeuronCount)
+                : new Object[outputNeuronCount];
+        // Votes for each value of the neurons which have won anything, and the count of each neuron's leading value
+        HashMap<T, Integer>[] votes = new HashMap[outputNeuronCount];
+        int[] leading = new int[outputNeuronCount];
+        for (int s = 0; s != samples.size(); s++) {
+            int n = recalls.get(s).neuron;
+            T t = sampleValues.get(s);
+            if (votes[n] == null) votes[n] = new HashMap<>();
+            Integer count = votes[n].get(t);
+            count = count == null ? 1 : count + 1;
+            votes[n].put(t, count);
+            if (count >= leading[n]) {
+                leading[n] = count;
+                map[n] = t;
+            }
+        }
+        return (T[]) map;
+    }
+
+    /**
+     * Recalls the best matching values for an input vector.
+     *
+     * @see KohonenModel#recall(double[], int)
+     */
+    public List<Match<T>> recall(double[] input, int k) {
+        double[] activations = new double[outputNeuronCount];
+        winner(input, activations);
+        return KohonenModel.top(activations, null, getNeuronMap(), k);
+    }
+
+    /**
+     * Learns a single training set without retraining the network.
+     * <p/>
+     * The training set is added to the others. If a neuron standing for the value wins it, or can be made to win it
+     * by moving the neuron standing for the value which responds most strongly towards it, that neuron is moved.
+     * Otherwise a neuron matching the training set exactly is added as a new prototype of the value. The neuron map
+     * is then refreshed by presenting each training set to the changed neurons only.
+     *
+     * @param t    The value the training set stands for.
+     * @param data The training set.
+     * @param rate How far to move an existing neuron towards the training set, from 0..1.
+     * @return The neuron which now stands for the training set.
+     */
+    public synchronized int update(T t, double[] data, double rate) {
+        T[] map = getNeuronMap();
+        samples.add(data);
+        sampleValues.add(t);
+        recalls.add(null);
+
+        int neuron = -1;
+        double strongest = Double.NEGATIVE_INFINITY;
+        for (int n = 0; n != map.length; n++) {
+            if (!t.equals(map[n])) continue;
+            double activation = activation(data, n);
+            if (activation > strongest) {
+                strongest = activation;
+                neuron = n;
+            }
+        }
+
+        int moved = neuron;
+        if (neuron >= 0) {
+            double normalizationFactor = 1.0 / magnitudeOf(data);
+            int row = neuron * weightStride;
+            for (int i = 0; i < inputNeuronCount; i++) {
+                outputWeights[row + i] += rate * data[i] * normalizationFactor;
+            }
+            normalize(outputWeights, row, weightStride);
+            int best = winner(data, null);
+            if (t.equals(map[best]))
+                neuron = best;
+            else
+                neuron = -1;
+        }
+        if (neuron < 0) {
+            neuron = grow();
+            // Set the neuron to the training set itself, as forceWin does
+            int row = neuron * weightStride;
+            System.arraycopy(data, 0, outputWeights, row, inputNeuronCount);
+            outputWeights[row + inputNeuronCount] = 0;
+            normalize(outputWeights, row, weightStride);
+        }
+
+        refresh(moved, neuron);
+        _neuronMap = mapNeurons();
+        return neuron;
+    }
 
-        for (Map.Entry<T, double[]> ds : samples.entrySet()) {
-            int best = winner(ds.getValue());
-            map[best] = ds.getKey();
+    /**
+     * Brings the recalled neuron of every training set up to date after some neurons have changed.
+     */
+    private void refresh(int... changed) {
+        for (int s = 0; s != samples.size(); s++) {
+            double[] set = samples.get(s);
+            Recall recall = recalls.get(s);
+            boolean lost = recall == null;
+            for (int n : changed) {
+                if (recall != null && recall.neuron == n) lost = true;
+            }
+            if (lost) {
+                // Its winner may have moved anywhere
+                int best = winner(set, null);
+                recalls.set(s, new Recall(best, activation(set, best)));
+                continue;
+            }
+            // Only a changed neuron can have overtaken its winner; ties go to the lower neuron
+            for (int n : changed) {
+                if (n < 0) continue;
+                double activation = activation(set, n);
+                if (activation > recall.activation || activation == recall.activation && n < recall.neuron)
+                    recalls.set(s, recall = new Recall(n, activation));
+            }
         }
-        return _neuronMap = (T[]) map;
+    }
+
+    /**
+     * Adds an output neuron.
+     *
+     * @return The new neuron.
+     */
+    private int grow() {
+        outputWeights = Arrays.copyOf(outputWeights, (outputNeuronCount + 1) * weightStride);
+        output = new double[outputNeuronCount + 1];
+        // Training buffers are sized by the output layer
+        won = null;
+        shards = null;
+        fork = null;
+        return outputNeuronCount++;
+    }
+
+    /**
+     * @return The activation of a neuron, computed exactly as the winner search does.
+     */
+    private double activation(double[] input, int neuron) {
+        return (dot(input, outputWeights, neuron * weightStride) * (1.0 / magnitudeOf(input)) + 1) * 0.5;
+    }
+
+    /**
+     * Takes an immutable snapshot of the network's current weights and neuron map, which may be shared between
+     * threads.
+     *
+     * @return The snapshot.
+     */
+    public KohonenModel<T> snapshot() {
+        return new KohonenModel<>(inputNeuronCount, outputNeuronCount, outputWeights, getNeuronMap());
+    }
+
+    /**
+     * Takes a snapshot holding its weights at the given precision. Training always runs at full precision.
+     *
+     * @see #snapshot()
+     */
+    public KohonenModel<T> snapshot(WeightPrecision precision) {
+        if (precision == WeightPrecision.FLOAT64)
+            return snapshot();
+        WeightMatrix weights = new ArrayWeightMatrix(outputNeuronCount, weightStride, outputWeights);
+        return new KohonenModel<>(precision.copy(weights), getNeuronMap());
     }
 
     public T recall(double[] input) {
-        return getNeuronMap()[winner(input)];
+        return getNeuronMap()[winner(input, null)];
     }
 
     /**
-     * Presents an input vector to the network.
+     * Recalls a batch of input vectors.
+     *
+     * @param inputs The input vectors.
+     * @return The recalled value of each input vector, in order.
+     * @see #winners(double[][])
+     */
+    public List<T> recall(double[][] inputs) {
+        T[] map = getNeuronMap();
+        List<T> recalled = new ArrayList<>(inputs.length);
+        for (int winner : winners(inputs)) {
+            recalled.add(map[winner]);
+        }
+        return recalled;
+    }
+
+    /**
+     * Presents an input vector to the network, storing the activation of every output neuron in {@link #getOutput()}.
      *
      * @param input The input vector to present to the network.
      * @return The neuron which fired.
      */
     public int winner(double input[]) {
-        double biggest = Double.MIN_VALUE;
-        double normalizationFactor = 1.0 / magnitudeOf(input);
-        // The winning neuron
-        int winning = 0;
-        for (int i = 0; i < outputNeuronCount; i++) {
-            // To calculate the weight of an output neuron,
-            // 1. get the dot product of the input and weight vectors
-            // 2. multiply by the normalization factor
-            // 3. map to bipolar (add 1 and / by 2)
-            double weight = (dot(input, outputWeights[i]) * normalizationFactor + 1) * 0.5;
-            // Clamp to 0, 1
-            output[i] = clamp(weight, 0, 1);
-            if (weight > biggest) {
-                biggest = weight;
-                winning = i;
-            }
-        }
+        return winner(input, output);
+    }
 
-        return winning;
+    /**
+     * Presents an input vector to the network.
+     *
+     * @param input  The input vector to present to the network.
+     * @param output A buffer to receive the activation of every output neuron, or null if they are not needed.
+     * @return The neuron which fired.
+     */
+    public int winner(double input[], double output[]) {
+        return KohonenModel.winner(outputWeights, weightStride, outputNeuronCount, input, output);
+    }
+
+    /**
+     * Presents a batch of input vectors to the network. Unlike {@link #winner(double[])}, this does not update
+     * {@link #getOutput()}.
+     *
+     * @param inputs The input vectors to present to the network.
+     * @return The neuron which fired for each input vector, in order.
+     */
+    public int[] winners(double[][] inputs) {
+        return KohonenModel.winners(outputWeights, weightStride, inputNeuronCount, outputNeuronCount, inputs);
     }
 
     /**
@@ -81,51 +345,85 @@ public class KohonenNetwork<T> {
      * @param rate        The rate at which to adjust weights, a real number less than 1.
      * @param method      The method to use to learn.
      * @param won         A container to store how many times each neuron won.
-     * @param corrections A container to store corrections.
+     * @param corrections A container to store corrections, laid out like the weight matrix.
      * @return The total error of this network.
      */
-    protected double evaluateErrors(double rate, LearnMethod method, int won[], double corrections[][]) {
-        double[] weights = method == ADDITIVE ? new double[inputNeuronCount + 1] : null;
+    protected double evaluateErrors(double rate, LearnMethod method, int won[], double corrections[]) {
+        if (evaluated == null) evaluated = new double[weightStride];
+        double[] weights = evaluated;
 
         double largestError = 0.0;
 
         // loop through all training sets to determine correction
-        for (double[] set : samples.values()) {
-            int best = winner(set);
-            won[best]++;
-            double[] output = outputWeights[best];
-            double[] correction = corrections[best];
-            double length = 0.0;
+        for (double[] set : samples) {
+            largestError = max(largestError, evaluate(set, rate, method, output, won, corrections, weights));
+        }
+        return sqrt(largestError);
+    }
 
-            double normalizationFactor = 1.0 / magnitudeOf(set);
+    /**
+     * Evaluates errors like {@link #evaluateErrors(double, LearnMethod, int[], double[])}, with every shard
+     * evaluated on {@link #pool}.
+     */
+    private double evaluateErrors(double rate, LearnMethod method, int won[], double corrections[],
+                                  Shard[] shards) {
+        for (Shard shard : shards) {
+            shard.rate = rate;
+            shard.method = method;
+        }
+        run(shards);
 
-            for (int i = 0; i < inputNeuronCount; i++) {
-                double diff = set[i] * normalizationFactor - output[i];
-                length += diff * diff;
+        double largestError = 0.0;
+        for (Shard shard : shards) {
+            largestError = max(largestError, shard.largestError);
+            for (int n = 0; n != outputNeuronCount; n++) {
+                if (shard.won[n] == 0) continue;
+                won[n] += shard.won[n];
+                int row = n * weightStride;
+                for (int i = 0; i < inputNeuronCount; i++)
+                    corrections[row + i] += shard.corrections[row + i];
+                // The subtractive method sets rather than sums the bias correction
                 if (method == SUBTRACTIVE)
-                    correction[i] += diff;
+                    corrections[row + inputNeuronCount] = shard.corrections[row + inputNeuronCount];
                 else
-                    weights[i] = rate * set[i] * normalizationFactor + output[i];
-            }
-            double diff = output[inputNeuronCount];
-            length += diff * diff;
-            if (method == SUBTRACTIVE)
-                correction[inputNeuronCount] = diff;
-            else
-                weights[inputNeuronCount] = output[inputNeuronCount];
-
-            if (length > largestError)
-                largestError = length;
-
-            if (method == ADDITIVE) {
-                normalize(weights);
-                for (int i = 0; i <= inputNeuronCount; i++)
-                    correction[i] += weights[i] - output[i];
+                    corrections[row + inputNeuronCount] += shard.corrections[row + inputNeuronCount];
             }
         }
         return sqrt(largestError);
     }
 
+    /**
+     * Accumulates the correction a single training set asks of the neuron it wins.
+     *
+     * @return The squared error of the training set.
+     */
+    private double evaluate(double[] set, double rate, LearnMethod method, double[] output, int won[],
+                            double corrections[], double[] weights) {
+        int best = winner(set, output);
+        won[best]++;
+        int row = best * weightStride;
+        double length = 0.0;
+
+        double normalizationFactor = 1.0 / magnitudeOf(set);
+
+        length += distanceSquared(set, normalizationFactor, outputWeights, row);
+        if (method == SUBTRACTIVE)
+            accumulateDifference(set, normalizationFactor, outputWeights, row, corrections);
+        else
+            scaleAdd(set, rate * normalizationFactor, outputWeights, row, weights);
+        double diff = outputWeights[row + inputNeuronCount];
+        length += diff * diff;
+        if (method == SUBTRACTIVE)
+            corrections[row + inputNeuronCount] = diff;
+        else
+            weights[inputNeuronCount] = outputWeights[row + inputNeuronCount];
+
+        if (method == ADDITIVE) {
+            normalize(weights);
+            accumulateDifference(weights, 1, outputWeights, row, corrections);
+        }
+        return length;
+    }
 
     /**
      * Adjusts the network weights based on the given corrections.
@@ -133,10 +431,10 @@ public class KohonenNetwork<T> {
      * @param rate        The rate at which to adjust weights, a real number less than 1.
      * @param method      The method to use to learn.
      * @param won         A container to store how many times each neuron won.
-     * @param corrections A container containing connections.
+     * @param corrections A container containing corrections, laid out like the weight matrix.
      * @return The largest correction made.
      */
-    protected double adjustWeights(double rate, LearnMethod method, int won[], double corrections[][]) {
+    protected double adjustWeights(double rate, LearnMethod method, int won[], double corrections[]) {
         double largestCorrection = 0.0;
 
         for (int i = 0; i < outputNeuronCount; i++) {
@@ -147,13 +445,7 @@ public class KohonenNetwork<T> {
             if (method == SUBTRACTIVE)
                 f *= rate;
 
-            double length = 0.0;
-
-            for (int j = 0; j <= inputNeuronCount; j++) {
-                double corr = f * corrections[i][j];
-                outputWeights[i][j] += corr;
-                length += corr * corr;
-            }
+            double length = addScaled(corrections, f, outputWeights, i * weightStride, weightStride);
 
             if (length > largestCorrection)
                 largestCorrection = length;
@@ -168,22 +460,42 @@ public class KohonenNetwork<T> {
      * @param won         A container which stores how many times each neuron won.
      */
     protected void forceWin(int[] won) {
+        forceWin(won, null);
+    }
+
+    private void forceWin(int[] won, Shard[] shards) {
         double dist = Double.MAX_VALUE;
 
         // Iterate over all training sets and find the one which produces the least output
-        double[] worstSet = samples.values().iterator().next();
-        for (double[] inputSet : samples.values()) {
-            int n = winner(inputSet);
-            if (output[n] < dist) {
-                dist = output[n];
-                worstSet = inputSet;
+        double[] worstSet = samples.get(0);
+        if (shards == null) {
+            for (double[] inputSet : samples) {
+                int n = winner(inputSet);
+                if (output[n] < dist) {
+                    dist = output[n];
+                    worstSet = inputSet;
+                }
             }
+        } else {
+            for (Shard shard : shards) {
+                shard.method = null;
+            }
+            run(shards);
+            for (Shard shard : shards) {
+                if (shard.worstSet != null && shard.leastOutput < dist) {
+                    dist = shard.leastOutput;
+                    worstSet = shard.worstSet;
+                }
+            }
+            // Leave the output of the last training set behind, as the serial search does
+            Shard last = shards[shards.length - 1];
+            winner(last.sets[last.to - 1]);
         }
 
         // Iterate over all output neurons to find one with most potential that wasn't activated
         // If we activate such a neuron, we help balance the network
         dist = Double.MIN_VALUE;
-        double[] outputs = outputWeights[0];
+        int outputs = 0;
         for (int n = 0; n != outputNeuronCount; n++) {
             // Find one which wasn't activated
             if (won[n] != 0) continue;
@@ -191,18 +503,22 @@ public class KohonenNetwork<T> {
             if (output[n] > dist) {
                 // If it is, we should activate it
                 dist = output[n];
-                outputs = outputWeights[n];
+                outputs = n * weightStride;
             }
         }
-        System.arraycopy(worstSet, 0, outputs, 0, worstSet.length);
+        System.arraycopy(worstSet, 0, outputWeights, outputs, worstSet.length);
 
-        outputs[inputNeuronCount] = 0;
-        normalize(outputs);
+        outputWeights[outputs + inputNeuronCount] = 0;
+        normalize(outputWeights, outputs, weightStride);
     }
 
-    public void queueData(T t, double[] data) {
+    /**
+     * Adds a training set. A value may be given any number of training sets.
+     */
+    public synchronized void queueData(T t, double[] data) {
         _neuronMap = null;
-        samples.put(t, data);
+        samples.add(data);
+        sampleValues.add(t);
     }
 
     /**
@@ -212,7 +528,7 @@ public class KohonenNetwork<T> {
     public void learn() {
         // The additive method was the one originally proposed by Kohonen, and tends
         // to give better results than the subtractive method
-        learn(ADDITIVE);
+        learn(new TrainingSchedule());
     }
 
     /**
@@ -221,7 +537,9 @@ public class KohonenNetwork<T> {
      * @param method      The method to use to learn.
      */
     public void learn(LearnMethod method) {
-        learn(0.4, 0.1, 0.99, 10000, method);
+        TrainingSchedule schedule = new TrainingSchedule();
+        schedule.setMethod(method);
+        learn(schedule);
     }
 
     /**
@@ -237,72 +555,291 @@ public class KohonenNetwork<T> {
      * @param method          The method to use to learn.
      */
     public void learn(double learnRate, double quitError, double reductionFactor, int retries, LearnMethod method) {
-        KohonenNetwork best = new KohonenNetwork(inputNeuronCount, outputNeuronCount);
+        TrainingSchedule schedule = new TrainingSchedule();
+        schedule.setMethod(method);
+        schedule.setLearnRate(LearnRateSchedules.exponential(learnRate, reductionFactor, 0.1));
+        schedule.setQuitError(quitError);
+        schedule.setRetries(retries);
+        learn(schedule);
+    }
+
+    /**
+     * Trains the network using the current training sets.
+     *
+     * @param schedule How to train. The statistics of the run are available from {@link #getStats()} afterwards.
+     */
+    public void learn(TrainingSchedule schedule) {
+        if (schedule.getStarts() > 1) {
+            learnStarts(schedule);
+            return;
+        }
+        if (schedule.getSeed() != null)
+            random = new Random(schedule.getSeed());
+        train(schedule, 0, null);
+    }
+
+    /**
+     * Trains independently seeded copies of the network, one per start of the schedule, and keeps the one with the
+     * lowest error. The starts run concurrently on {@link #pool}, or one after another if there is none; once any of
+     * them converges, the others stop at the end of their current epoch.
+     */
+    private void learnStarts(TrainingSchedule schedule) {
+        // Draw every seed up front so each start is reproducible whichever thread runs it
+        Random seeds = schedule.getSeed() != null ? new Random(schedule.getSeed()) : random;
+        final AtomicBoolean converged = new AtomicBoolean();
+        List<KohonenNetwork<T>> runs = new ArrayList<>(schedule.getStarts());
+        for (int i = 0; i != schedule.getStarts(); i++) {
+            KohonenNetwork<T> run = new KohonenNetwork<>(inputNeuronCount, outputNeuronCount);
+            run.samples = samples;
+            run.sampleValues = sampleValues;
+            run.random = new Random(seeds.nextLong());
+            runs.add(run);
+        }
+
+        if (pool == null) {
+            for (int i = 0; i != runs.size() && !converged.get(); i++) {
+                runs.get(i).train(schedule, i, converged);
+            }
+        } else {
+            final List<RecursiveAction> tasks = new ArrayList<>(runs.size());
+            for (int i = 0; i != runs.size(); i++) {
+                final KohonenNetwork<T> run = runs.get(i);
+                final TrainingSchedule runSchedule = schedule;
+                final int start = i;
+                tasks.add(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        run.train(runSchedule, start, converged);
+                    }
+                });
+            }
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        }
+
+        KohonenNetwork<T> best = null;
+        for (KohonenNetwork<T> run : runs) {
+            if (run.stats != null && (best == null || run.error < best.error))
+                best = run;
+        }
+        System.arraycopy(best.outputWeights, 0, outputWeights, 0, outputWeights.length);
+        error = best.error;
+        synchronized (this) {
+            _neuronMap = null;
+            modelLabels = null;
+        }
+        stats = best.stats;
+    }
+
+    /**
+     * Runs a single training run.
+     *
+     * @param start     The index of the run among concurrent starts, reported to the listener.
+     * @param converged Set once any run converges, and polled between epochs to stop this one; or null.
+     */
+    private void train(TrainingSchedule schedule, int start, AtomicBoolean converged) {
+        TrainingStats stats = new TrainingStats();
+        stats.setStart(start);
+        long allocatedBefore = allocatedBytes();
+        long started = System.nanoTime();
+        allocateBuffers(stats);
+        int[] won = this.won;
+        double[] corrections = this.corrections;
+        Shard[] shards = this.shards;
+
+        LearnMethod method = schedule.getMethod();
+        LearnRateSchedule rates = schedule.getLearnRate();
+        TrainingListener listener = schedule.getListener();
+        long deadline = started + schedule.getMaxMillis() * 1000000L;
 
         // Keep track of the current learning rate
-        double rate = learnRate;
+        double rate = rates.initial();
+        int adjustments = 0;
 
         // Initialize the weight matrix to normalized random values
         init();
 
         double bestErr = Double.MAX_VALUE;
+        int sinceBest = 0;
 
         for (int epoch = 0; ; ) {
-            // Keep track of how many times each neuron won
-            int[] won = new int[outputNeuronCount];
-
+            // Keep track of how many times each neuron won, and the corrections to make to each neuron
+            Arrays.fill(won, 0);
+            Arrays.fill(corrections, 0);
+            stats.setEpochs(stats.getEpochs() + 1);
 
-            // Container for neuron corrections
-            double[][] corrections = new double[outputNeuronCount][inputNeuronCount + 1];
-
-            double totalError = evaluateErrors(rate, method, won, corrections);
+            double totalError = shards != null
+                    ? evaluateErrors(rate, method, won, corrections, shards)
+                    : evaluateErrors(rate, method, won, corrections);
 
             // A better matrix has been found
             if (totalError < bestErr) {
                 bestErr = totalError;
+                sinceBest = 0;
                 // Copy to our matrix
-                best.outputWeights = outputWeights;
+                System.arraycopy(outputWeights, 0, bestWeights, 0, outputWeights.length);
+                stats.setBestEpoch(stats.getEpochs());
+            } else {
+                sinceBest++;
             }
 
-            // A suitable matrix has been found; exit training
-            if (totalError < quitError) break;
-
             // Some neurons might not have won at all, meaning some neurons won more than once
             int winners = 0;
             for (int i = 0; i != won.length; winners += (won[i++] != 0 ? 1 : 0)) ;
-            if (winners < max(outputNeuronCount, samples.size())) {
+
+            double epochRate = rate, correction = Double.NaN;
+            // A suitable matrix has been found; exit training
+            if (totalError < schedule.getQuitError()) {
+                stats.setStopReason(TrainingStats.StopReason.CONVERGED);
+                if (converged != null) converged.set(true);
+            } else if (winners < min(outputNeuronCount, samples.size())) {
                 // In that case, force them to win to offload
-                forceWin(won);
-                continue;
+                forceWin(won, shards);
+                stats.setForcedWins(stats.getForcedWins() + 1);
+            } else {
+                correction = adjustWeights(rate, method, won, corrections);
+                // If the correction is too low, there is no point continuing with this current
+                // configuration, so reset our parent weight matrix and restart
+                if (correction < schedule.getMinCorrection()) {
+                    if (++epoch > schedule.getRetries()) {
+                        stats.setStopReason(TrainingStats.StopReason.RETRIES_EXHAUSTED);
+                    } else {
+                        // Start a new cycle
+                        init();
+                        rate = rates.initial();
+                        adjustments = 0;
+                        stats.setRestarts(stats.getRestarts() + 1);
+                    }
+                } else {
+                    // As training progresses decrease the learning rate
+                    // This results in the network starting to learn very quickly, then slowing down
+                    // to "polish" the weights
+                    rate = rates.next(rate, ++adjustments);
+                }
             }
 
-            double correction = adjustWeights(rate, method, won, corrections);
-            // If the correction is too low, there is no point continuing with this current
-            // configuration, so reset our parent weight matrix and restart
-            if (correction < 1E-5) {
-                if (++epoch > retries) break;
-                // Start a new cycle
-                init();
-                rate = learnRate;
-                continue;
+            long now = System.nanoTime();
+            if (listener != null) {
+                listener.epochCompleted(new TrainingEpoch(start, stats.getEpochs(), stats.getRestarts(), epochRate,
+                        totalError, bestErr, correction, winners, outputNeuronCount, stats.getForcedWins(),
+                        now - started));
             }
 
-            // As training progresses decrease the learning rate
-            // This results in the network starting to learn very quickly, then slowing down
-            // to "polish" the weights
-            if (rate > 0.1) {
-                rate *= reductionFactor;
+            if (stats.getStopReason() == null) {
+                if (schedule.getMaxEpochs() > 0 && stats.getEpochs() >= schedule.getMaxEpochs())
+                    stats.setStopReason(TrainingStats.StopReason.EPOCH_BUDGET);
+                else if (schedule.getMaxMillis() > 0 && now - deadline >= 0)
+                    stats.setStopReason(TrainingStats.StopReason.TIME_BUDGET);
+                else if (schedule.getPatience() > 0 && sinceBest >= schedule.getPatience())
+                    stats.setStopReason(TrainingStats.StopReason.PATIENCE);
+                else if (converged != null && converged.get())
+                    stats.setStopReason(TrainingStats.StopReason.CANCELLED);
             }
+            if (stats.getStopReason() != null) break;
         }
 
         error = bestErr;
 
         // Copy weights to our network
-        outputWeights = best.outputWeights;
+        System.arraycopy(bestWeights, 0, outputWeights, 0, outputWeights.length);
+        // Neurons may have been remapped
+        synchronized (this) {
+            _neuronMap = null;
+            modelLabels = null;
+        }
         // And normalize
-        for (double[] weight : outputWeights) {
-            normalize(weight);
+        for (int n = 0; n != outputNeuronCount; n++) {
+            normalize(outputWeights, n * weightStride, weightStride);
+        }
+
+        if (allocatedBefore >= 0)
+            stats.setAllocatedBytes(allocatedBytes() - allocatedBefore);
+        this.stats = stats;
+    }
+
+    /**
+     * Allocates whichever training buffers the coming run cannot reuse from the last one.
+     */
+    private void allocateBuffers(TrainingStats stats) {
+        long bytes = 0;
+        int size = outputNeuronCount * weightStride;
+        if (won == null) {
+            won = new int[outputNeuronCount];
+            corrections = new double[size];
+            bestWeights = new double[size];
+            evaluated = new double[weightStride];
+            bytes += 4L * outputNeuronCount + 8L * (2 * size + weightStride);
+        }
+
+        int count = pool == null ? 1 : min(pool.getParallelism(), samples.size());
+        if (count < 2) {
+            shards = null;
+            fork = null;
+        } else {
+            // Shards see the training sets as they were when they were made, so they are only re-split if the
+            // training sets have changed since
+            boolean reuse = shards != null && shards.length == count;
+            if (!reuse) {
+                shards = shard(count, null);
+                fork = new Fork(shards);
+                bytes += (long) count * (4L * outputNeuronCount + 8L * (size + weightStride + outputNeuronCount));
+            } else if (!snapshotted(shards[0].sets)) {
+                shards = shard(count, shards);
+            }
         }
+        stats.setBufferBytes(bytes);
+    }
+
+    /**
+     * @return The bytes allocated by the current thread so far, or -1 if the JVM cannot tell.
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return -1;
+        com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) threads;
+        if (!sun.isThreadAllocatedMemorySupported() || !sun.isThreadAllocatedMemoryEnabled()) return -1;
+        return sun.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private void run(Shard[] shards) {
+        for (Shard shard : shards) {
+            shard.reinitialize();
+        }
+        fork.reinitialize();
+        pool.invoke(fork);
+    }
+
+    /**
+     * Splits the training sets into shards.
+     *
+     * @param count The number of shards.
+     * @param reuse Shards to re-split over the current training sets, or null to make new ones.
+     * @return The shards.
+     */
+    private Shard[] shard(int count, Shard[] reuse) {
+        double[][] sets = samples.toArray(new double[samples.size()][]);
+        @SuppressWarnings("unchecked")
+        Shard[] shards = reuse != null ? reuse : new KohonenNetwork.Shard[count];
+        for (int i = 0; i != count; i++) {
+            if (reuse == null) shards[i] = new Shard();
+            shards[i].span(sets, (int) ((long) sets.length * i / count), (int) ((long) sets.length * (i + 1) / count));
+        }
+        return shards;
+    }
+
+    /**
+     * @return Whether a snapshot of the training sets still holds the current ones, in order.
+     */
+    private boolean snapshotted(double[][] sets) {
+        if (sets.length != samples.size()) return false;
+        for (int i = 0; i != sets.length; i++) {
+            if (sets[i] != samples.get(i)) return false;
+        }
+        return true;
     }
 
     /**
@@ -311,11 +848,76 @@ public class KohonenNetwork<T> {
     protected void init() {
         // Initialize a randomized weight matrix - helps the network converge faster
         for (int x = 0; x < outputWeights.length; x++) {
-            for (int y = 0; y < outputWeights[0].length; y++) {
-                outputWeights[x][y] = Math.random() * 10 - 5;
-            }
+            outputWeights[x] = random.nextDouble() * 10 - 5;
         }
         // Weights must be normalized
-        for (int n = 0; n != outputWeights.length; normalize(outputWeights[n++])) ;
+        for (int n = 0; n != outputNeuronCount; normalize(outputWeights, n++ * weightStride, weightStride)) ;
+    }
+
+    // A contiguous range of the training sets with its own accumulators. A shard without a learn method searches
+    // for its least active training set instead of evaluating errors
+    private class Shard extends RecursiveAction {
+        private double[][] sets;
+        private int from, to;
+        private final int[] won = new int[outputNeuronCount];
+        private final double[] corrections = new double[outputNeuronCount * weightStride];
+        private final double[] weights = new double[weightStride], output = new double[outputNeuronCount];
+        private double rate;
+        private LearnMethod method;
+        private double largestError;
+        private double leastOutput;
+        private double[] worstSet;
+
+        void span(double[][] sets, int from, int to) {
+            this.sets = sets;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (method == null) {
+                leastOutput = Double.MAX_VALUE;
+                worstSet = null;
+                for (int i = from; i != to; i++) {
+                    int n = winner(sets[i], output);
+                    if (output[n] < leastOutput) {
+                        leastOutput = output[n];
+                        worstSet = sets[i];
+                    }
+                }
+                return;
+            }
+            Arrays.fill(won, 0);
+            Arrays.fill(corrections, 0);
+            largestError = 0;
+            for (int i = from; i != to; i++) {
+                largestError = max(largestError, evaluate(sets[i], rate, method, null, won, corrections, weights));
+            }
+        }
+    }
+
+    // Evaluates every shard at once, reused by every epoch for as long as the shards are
+    private static class Fork extends RecursiveAction {
+        private final RecursiveAction[] shards;
+
+        Fork(RecursiveAction[] shards) {
+            this.shards = shards;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(shards);
+        }
+    }
+
+    private static class Recall {
+        private final int neuron;
+        private final double activation;
+
+        Recall(int neuron, double activation) {
+            this.neuron = neuron;
+            this.activation = activation;
+        }
     }
 }
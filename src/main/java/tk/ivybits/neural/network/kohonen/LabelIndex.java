@@ -0,0 +1,89 @@
+package tk.ivybits.neural.network.kohonen;
+
+import java.util.*;
+
+import static tk.ivybits.neural.network.VecMath.*;
+
+/**
+ * A coarse-to-fine index for models with several neurons, or prototypes, per value.
+ * <p/>
+ * Each value is summarized by the normalized mean of its neurons' weights. An input is first scored against these
+ * centroids, and only the neurons of the best {@code probes} values are scored exactly, so recall costs one dot
+ * product per value plus one per prototype of the probed values instead of one per neuron. Neurons which stand for
+ * no value are never candidates. More probes give results closer to exact search.
+ */
+public class LabelIndex implements NeuronIndex {
+    private final int inputNeuronCount;
+    private final int probes;
+    // Row-major centroid per value, and the neurons of each value in ascending order
+    private final double[] centroids;
+    private final int[][] members;
+
+    public LabelIndex(KohonenModel<?> model, int probes) {
+        if (probes < 1)
+            throw new IllegalArgumentException("probes must be positive");
+        this.inputNeuronCount = model.getInputNeuronCount();
+        this.probes = probes;
+
+        LinkedHashMap<Object, List<Integer>> groups = new LinkedHashMap<>();
+        for (int n = 0; n != model.getOutputNeuronCount(); n++) {
+            Object label = model.getLabel(n);
+            if (label == null) continue;
+            List<Integer> group = groups.get(label);
+            if (group == null) groups.put(label, group = new ArrayList<>());
+            group.add(n);
+        }
+
+        WeightMatrix weights = model.getWeights();
+        centroids = new double[groups.size() * inputNeuronCount];
+        members = new int[groups.size()][];
+        int l = 0;
+        for (List<Integer> group : groups.values()) {
+            int off = l * inputNeuronCount;
+            members[l] = new int[group.size()];
+            for (int m = 0; m != group.size(); m++) {
+                int n = members[l][m] = group.get(m);
+                for (int i = 0; i != inputNeuronCount; i++) {
+                    centroids[off + i] += weights.get(n, i);
+                }
+            }
+            normalize(centroids, off, inputNeuronCount);
+            l++;
+        }
+    }
+
+    @Override
+    public int[] candidates(double[] input) {
+        int labels = members.length;
+        if (probes >= labels) return null;
+
+        // Keep the best probes labels, best first, by insertion
+        int[] best = new int[probes];
+        double[] scores = new double[probes];
+        int kept = 0;
+        for (int l = 0; l != labels; l++) {
+            double score = dot(input, centroids, l * inputNeuronCount);
+            if (kept == probes && score <= scores[kept - 1]) continue;
+            int at = kept == probes ? kept - 1 : kept++;
+            while (at > 0 && scores[at - 1] < score) {
+                best[at] = best[at - 1];
+                scores[at] = scores[at - 1];
+                at--;
+            }
+            best[at] = l;
+            scores[at] = score;
+        }
+
+        int count = 0;
+        for (int p = 0; p != kept; p++) count += members[best[p]].length;
+        int[] candidates = new int[count];
+        count = 0;
+        for (int p = 0; p != kept; p++) {
+            int[] group = members[best[p]];
+            System.arraycopy(group, 0, candidates, count, group.length);
+            count += group.length;
+        }
+        Arrays.sort(candidates);
+        return candidates;
+    }
+}
@@ -0,0 +1,20 @@
+package tk.ivybits.neural.network.kohonen;
+
+/**
+ * Decides the learn rate of each training epoch.
+ *
+ * @see LearnRateSchedules
+ */
+public interface LearnRateSchedule {
+    /**
+     * @return The learn rate to start with, and to return to whenever the weights are reinitialized.
+     */
+    double initial();
+
+    /**
+     * @param rate   The learn rate the weights were just adjusted with.
+     * @param epoch  How many times the weights have been adjusted since they were initialized, counting from 1.
+     * @return The learn rate of the next adjustment.
+     */
+    double next(double rate, int epoch);
+}
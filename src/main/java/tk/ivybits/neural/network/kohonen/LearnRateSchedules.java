@@ -0,0 +1,68 @@
+package tk.ivybits.neural.network.kohonen;
+
+/**
+ * Common {@link LearnRateSchedule}s.
+ */
+public final class LearnRateSchedules {
+    private LearnRateSchedules() {
+    }
+
+    public static LearnRateSchedule constant(final double rate) {
+        return new LearnRateSchedule() {
+            @Override
+            public double initial() {
+                return rate;
+            }
+
+            @Override
+            public double next(double current, int epoch) {
+                return rate;
+            }
+        };
+    }
+
+    /**
+     * Multiplies the learn rate by a constant factor every epoch until it falls to or below a floor. This is the
+     * schedule of {@link KohonenNetwork#learn(double, double, double, int, KohonenNetwork.LearnMethod)}.
+     *
+     * @param rate   The initial learn rate.
+     * @param factor The factor to multiply the rate by each epoch.
+     * @param floor  The rate below which decay stops.
+     */
+    public static LearnRateSchedule exponential(final double rate, final double factor, final double floor) {
+        return new LearnRateSchedule() {
+            @Override
+            public double initial() {
+                return rate;
+            }
+
+            @Override
+            public double next(double current, int epoch) {
+                return current > floor ? current * factor : current;
+            }
+        };
+    }
+
+    /**
+     * Decays the learn rate linearly over a number of epochs, after which it stays put.
+     *
+     * @param from   The initial learn rate.
+     * @param to     The final learn rate.
+     * @param epochs The number of epochs to go from one to the other over.
+     */
+    public static LearnRateSchedule linear(final double from, final double to, final int epochs) {
+        if (epochs < 1)
+            throw new IllegalArgumentException("epochs must be positive");
+        return new LearnRateSchedule() {
+            @Override
+            public double initial() {
+                return from;
+            }
+
+            @Override
+            public double next(double current, int epoch) {
+                return from + (to - from) * Math.min(epoch, epochs) / epochs;
+            }
+        };
+    }
+}
@@ -0,0 +1,19 @@
+package tk.ivybits.neural.network.kohonen;
+
+import lombok.Data;
+
+/**
+ * One of the best matches for an input vector, as returned by {@link KohonenModel#recall(double[], int)}.
+ */
+@Data
+public class Match<T> {
+    private final T value;
+    /**
+     * The neuron standing for the value which responded most strongly.
+     */
+    private final int neuron;
+    /**
+     * The activation of that neuron, from 0..1.
+     */
+    private final double confidence;
+}
@@ -0,0 +1,17 @@
+package tk.ivybits.neural.network.kohonen;
+
+/**
+ * Narrows down which output neurons of a {@link KohonenModel} could win an input vector, so that only those are
+ * scored. An index trades accuracy for speed: the winner among its candidates is not always the true winner.
+ *
+ * @see KohonenModel#withIndex(NeuronIndex)
+ */
+public interface NeuronIndex {
+    /**
+     * Must be safe to call from any number of threads at once.
+     *
+     * @param input The input vector.
+     * @return The neurons to score in ascending order, or null to score every neuron.
+     */
+    int[] candidates(double[] input);
+}
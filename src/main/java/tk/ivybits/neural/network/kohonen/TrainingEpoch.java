@@ -0,0 +1,53 @@
+package tk.ivybits.neural.network.kohonen;
+
+import lombok.Data;
+
+/**
+ * The state of a training run at the end of an epoch, as reported to a {@link TrainingListener}.
+ */
+@Data
+public class TrainingEpoch {
+    /**
+     * Which of several concurrent starts this epoch belongs to.
+     */
+    private final int start;
+    /**
+     * The number of epochs evaluated so far, including this one.
+     */
+    private final int epoch;
+    /**
+     * The number of times the weights have been reinitialized so far.
+     */
+    private final int restarts;
+    /**
+     * The learn rate this epoch was evaluated with.
+     */
+    private final double rate;
+    private final double error;
+    /**
+     * The lowest error of any epoch so far; the weights of that epoch are the ones training ends with.
+     */
+    private final double bestError;
+    /**
+     * The largest correction made to a neuron, scaled by the learn rate, or NaN if this epoch did not adjust the
+     * weights because it forced a neuron to win or training has converged.
+     */
+    private final double correction;
+    /**
+     * The number of neurons which won at least one training set.
+     */
+    private final int winners;
+    private final int neurons;
+    /**
+     * The number of epochs which forced a neuron to win so far, including this one.
+     */
+    private final int forcedWins;
+    private final long elapsedNanos;
+
+    /**
+     * @return The fraction of neurons which won at least one training set.
+     */
+    public double getCoverage() {
+        return (double) winners / neurons;
+    }
+}
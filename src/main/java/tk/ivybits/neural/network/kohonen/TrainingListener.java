@@ -0,0 +1,12 @@
+package tk.ivybits.neural.network.kohonen;
+
+/**
+ * Observes a {@link KohonenNetwork} as it trains.
+ */
+public interface TrainingListener {
+    /**
+     * Called on the training thread at the end of every epoch. When several starts train concurrently, it is called
+     * from each of their threads.
+     */
+    void epochCompleted(TrainingEpoch epoch);
+}
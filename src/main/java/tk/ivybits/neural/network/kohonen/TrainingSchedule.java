@@ -0,0 +1,56 @@
+package tk.ivybits.neural.network.kohonen;
+
+import lombok.Data;
+
+import tk.ivybits.neural.network.kohonen.KohonenNetwork.LearnMethod;
+
+/**
+ * How a {@link KohonenNetwork} trains: its learn rates, when it stops, and who watches.
+ * <p/>
+ * The defaults reproduce {@link KohonenNetwork#learn()}. Training stops at the first of: the error falling below
+ * {@link #quitError}, {@link #retries} restarts, the epoch or time budget running out, {@link #patience} epochs
+ * passing without a better error, or another of several {@link #starts} converging. Whichever it was is reported in
+ * {@link TrainingStats#getStopReason()}.
+ */
+@Data
+public class TrainingSchedule {
+    private LearnMethod method = LearnMethod.ADDITIVE;
+    private LearnRateSchedule learnRate = LearnRateSchedules.exponential(0.4, 0.99, 0.1);
+    /**
+     * The error below which the network is considered trained.
+     */
+    private double quitError = 0.1;
+    /**
+     * The correction below which the weights are considered stuck, and are reinitialized.
+     */
+    private double minCorrection = 1E-5;
+    /**
+     * The number of times the weights may be reinitialized.
+     */
+    private int retries = 10000;
+    /**
+     * The maximum number of epochs to evaluate, or 0 for no limit.
+     */
+    private int maxEpochs;
+    /**
+     * The maximum time to train for, in milliseconds, or 0 for no limit. It is checked between epochs.
+     */
+    private long maxMillis;
+    /**
+     * The number of consecutive epochs without a better error after which training gives up, or 0 to never give up.
+     */
+    private int patience;
+    /**
+     * The number of independently initialized networks to train, keeping the one with the lowest error. They train
+     * concurrently on the network's pool, and once one converges the rest are cancelled.
+     */
+    private int starts = 1;
+    /**
+     * The seed of the initial weights, or null to carry on with the network's own random source.
+     */
+    private Long seed;
+    /**
+     * Notified at the end of every epoch, or null.
+     */
+    private TrainingListener listener;
+}
@@ -0,0 +1,59 @@
+package tk.ivybits.neural.network.kohonen;
+
+import lombok.Data;
+
+/**
+ * What a call to {@link KohonenNetwork#learn} did, and what it cost.
+ */
+@Data
+public class TrainingStats {
+    public enum StopReason {
+        /**
+         * The error fell below the quit error.
+         */
+        CONVERGED,
+        /**
+         * The corrections died out once more than the retries allowed.
+         */
+        RETRIES_EXHAUSTED,
+        EPOCH_BUDGET,
+        TIME_BUDGET,
+        /**
+         * The error stopped improving.
+         */
+        PATIENCE,
+        /**
+         * Another of several concurrent starts converged first.
+         */
+        CANCELLED
+    }
+
+    private StopReason stopReason;
+    /**
+     * Which of several concurrent starts the weights the network was left with came from.
+     */
+    private int start;
+    /**
+     * The number of epochs evaluated, including those which ended in forcing a neuron to win.
+     */
+    private int epochs;
+    private int forcedWins;
+    /**
+     * The number of times the weights were reinitialized because the corrections had died out.
+     */
+    private int restarts;
+    /**
+     * The epoch in which the weights the network was left with were found.
+     */
+    private int bestEpoch;
+    /**
+     * The bytes allocated for training buffers. Buffers are kept between runs, so this is zero when a network is
+     * retrained with the same pool.
+     */
+    private long bufferBytes;
+    /**
+     * The bytes allocated by the thread which called {@code learn} over the whole run, or -1 if the JVM cannot
+     * measure them. Allocations on pool threads are not included.
+     */
+    private long allocatedBytes = -1;
+}
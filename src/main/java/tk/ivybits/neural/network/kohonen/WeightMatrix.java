@@ -0,0 +1,27 @@
+package tk.ivybits.neural.network.kohonen;
+
+/**
+ * Read access to the weight matrix of a Kohonen network, one row per output neuron.
+ */
+public interface WeightMatrix {
+    /**
+     * @return The number of rows, one per output neuron.
+     */
+    int getRows();
+
+    /**
+     * @return The number of weights in each row, one per input neuron plus one.
+     */
+    int getColumns();
+
+    double get(int row, int column);
+
+    /**
+     * Calculates the dot product of a vector and the start of a row.
+     *
+     * @param row   The row.
+     * @param input The vector; only the first {@code input.length} weights of the row are used.
+     * @return The dot product.
+     */
+    double dot(int row, double[] input);
+}
@@ -0,0 +1,48 @@
+package tk.ivybits.neural.network.kohonen;
+
+import lombok.Getter;
+
+/**
+ * The precision weights are stored with.
+ */
+public enum WeightPrecision {
+    FLOAT64(8), FLOAT32(4),
+    /**
+     * Signed bytes with a float32 scale per row.
+     *
+     * @see ByteWeightMatrix
+     */
+    INT8(1);
+
+    /**
+     * The number of bytes per weight.
+     */
+    @Getter
+    private final int bytes;
+
+    WeightPrecision(int bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * @return A copy of a weight matrix held on the heap at this precision.
+     */
+    public WeightMatrix copy(WeightMatrix weights) {
+        switch (this) {
+            case FLOAT32:
+                return new FloatWeightMatrix(weights);
+            case INT8:
+                return new ByteWeightMatrix(weights);
+            default:
+                if (weights instanceof ArrayWeightMatrix) return weights;
+                int rows = weights.getRows(), columns = weights.getColumns();
+                double[] array = new double[rows * columns];
+                for (int row = 0; row != rows; row++) {
+                    for (int column = 0; column != columns; column++) {
+                        array[row * columns + column] = weights.get(row, column);
+                    }
+                }
+                return new ArrayWeightMatrix(rows, columns, array);
+        }
+    }
+}
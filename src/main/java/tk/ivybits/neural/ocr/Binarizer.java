@@ -0,0 +1,336 @@
+package tk.ivybits.neural.ocr;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Converts scanned pages to bitmaps by thresholding their grey levels.
+ * <p/>
+ * {@link BinaryImage#of(BufferedImage)} treats every pixel which is not pure white as ink, so a grey background or
+ * compression noise turns a scan into a single solid component. A binarizer instead picks a threshold from the
+ * page: a global one with Otsu's method, or one per pixel from the mean and standard deviation of the grey levels
+ * around it with Niblack's or Sauvola's method.
+ * <p/>
+ * The page is worked on in square tiles, each read and thresholded on its own, so only a tile's grey levels are ever
+ * held in memory and tiles can be spread over a {@link ForkJoinPool}. Local thresholds are read from summed-area
+ * tables of the grey levels and their squares over each tile and the window around it, so the cost per pixel does
+ * not depend on the size of the window.
+ */
+public class Binarizer {
+    // A multiple of 64, so that tiles never share a word of the bitmap
+    private static final int TILE = 256;
+    // Niblack's and Sauvola's dynamic range of the standard deviation
+    private static final double RANGE = 128;
+    // How the alpha of a packed pixel is read
+    private static final int OPAQUE = 0, STRAIGHT = 1, PREMULTIPLIED = 2;
+
+    public enum Method {
+        /**
+         * A single threshold for the whole page, chosen to best separate its grey levels into two classes.
+         */
+        OTSU(0),
+        /**
+         * A threshold of {@code mean + k * deviation} around each pixel. Noise in blank areas comes out as ink.
+         */
+        NIBLACK(-0.2),
+        /**
+         * A threshold of {@code mean * (1 + k * (deviation / 128 - 1))} around each pixel, which leaves blank areas
+         * blank.
+         */
+        SAUVOLA(0.34);
+
+        /**
+         * The value of k the method is usually run with.
+         */
+        @Getter
+        private final double defaultK;
+
+        Method(double defaultK) {
+            this.defaultK = defaultK;
+        }
+    }
+
+    @Getter
+    protected final Method method;
+    /**
+     * The width and height of the window local thresholds are taken over, in pixels. Odd sizes center the window on
+     * each pixel.
+     */
+    @Getter
+    protected final int window;
+    @Getter
+    protected final double k;
+    /**
+     * The pool tiles are spread over, or null to binarize on the calling thread.
+     */
+    @Getter
+    @Setter
+    protected volatile ForkJoinPool pool;
+
+    public Binarizer(Method method, int window, double k) {
+        if (window < 1)
+            throw new IllegalArgumentException("window must be positive");
+        this.method = method;
+        this.window = window;
+        this.k = k;
+    }
+
+    public Binarizer(Method method) {
+        this(method, 31, method.getDefaultK());
+    }
+
+    /**
+     * Binarizes a page. Pixels darker than their threshold are ink.
+     *
+     * @param image The page.
+     * @return A new bitmap of the same dimensions.
+     */
+    public BinaryImage binarize(BufferedImage image) {
+        BinaryImage bin = new BinaryImage(image.getWidth(), image.getHeight());
+        if (method == Method.OTSU) {
+            int[] histogram = new int[256];
+            run(new Tiles(image, bin, histogram, -1));
+            run(new Tiles(image, bin, null, threshold(histogram)));
+        } else {
+            run(new Tiles(image, bin, null, -1));
+        }
+        return bin;
+    }
+
+    /**
+     * Picks a global threshold with Otsu's method.
+     *
+     * @param histogram The number of pixels at each of 256 grey levels.
+     * @return The brightest grey level counted as ink, or -1 if the levels cannot be separated.
+     */
+    public static int threshold(int[] histogram) {
+        long total = 0, sum = 0;
+        for (int i = 0; i != 256; i++) {
+            total += histogram[i];
+            sum += (long) i * histogram[i];
+        }
+
+        // Maximize the variance between the levels at or below t and those above it
+        long count = 0, below = 0;
+        double best = 0;
+        int threshold = -1;
+        for (int t = 0; t != 255; t++) {
+            count += histogram[t];
+            below += (long) t * histogram[t];
+            if (count == 0) continue;
+            if (count == total) break;
+            double mean0 = (double) below / count, mean1 = (double) (sum - below) / (total - count);
+            double variance = (double) count * (total - count) * (mean0 - mean1) * (mean0 - mean1);
+            if (variance > best) {
+                best = variance;
+                threshold = t;
+            }
+        }
+        return threshold;
+    }
+
+    private void run(Tiles tiles) {
+        ForkJoinPool pool = this.pool;
+        if (pool != null)
+            pool.invoke(tiles);
+        else
+            tiles.compute();
+    }
+
+    // Binarizes a range of rows of tiles, splitting it down to a single row per task
+    private class Tiles extends RecursiveAction {
+        private final BufferedImage image;
+        private final BinaryImage bin;
+        // Receives the histogram of the page rather than binarizing it, if not null
+        private final int[] histogram;
+        private final int threshold;
+        private final int from, to;
+
+        Tiles(BufferedImage image, BinaryImage bin, int[] histogram, int threshold) {
+            this(image, bin, histogram, threshold, 0, (image.getHeight() + TILE - 1) / TILE);
+        }
+
+        Tiles(BufferedImage image, BinaryImage bin, int[] histogram, int threshold, int from, int to) {
+            this.image = image;
+            this.bin = bin;
+            this.histogram = histogram;
+            this.threshold = threshold;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1 && getPool() != null) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Tiles(image, bin, histogram, threshold, from, mid),
+                        new Tiles(image, bin, histogram, threshold, mid, to));
+                return;
+            }
+
+            int w = image.getWidth(), h = image.getHeight();
+            // Buffers reused by every tile of the range
+            int[] grey = null, row = new int[0];
+            long[] sums = null, squares = null;
+            int[] counts = histogram != null ? new int[256] : null;
+            // How far the window reaches before and after a pixel
+            int before = method == Method.OTSU ? 0 : (window - 1) / 2, after = method == Method.OTSU ? 0 : window / 2;
+
+            for (int ty = from; ty != to; ty++) {
+                for (int x0 = 0; x0 < w; x0 += TILE) {
+                    int y0 = ty * TILE, x1 = Math.min(x0 + TILE, w), y1 = Math.min(y0 + TILE, h);
+                    // The tile and the window around its edge pixels
+                    int rx0 = Math.max(x0 - before, 0), ry0 = Math.max(y0 - before, 0);
+                    int rx1 = Math.min(x1 + after, w), ry1 = Math.min(y1 + after, h);
+                    int rw = rx1 - rx0, rh = ry1 - ry0;
+                    if (grey == null || grey.length < rw * rh) grey = new int[rw * rh];
+                    if (row.length < rw) row = new int[rw];
+                    read(image, rx0, ry0, rw, rh, grey, row);
+
+                    if (counts != null) {
+                        for (int i = 0; i != rw * rh; i++) counts[grey[i]]++;
+                    } else if (method == Method.OTSU) {
+                        for (int y = y0; y != y1; y++) {
+                            for (int x = x0, i = (y - ry0) * rw; x != x1; x++, i++) {
+                                if (grey[i] <= threshold) bin.set(x, y);
+                            }
+                        }
+                    } else {
+                        int stride = rw + 1;
+                        if (sums == null || sums.length < stride * (rh + 1)) {
+                            sums = new long[stride * (rh + 1)];
+                            squares = new long[stride * (rh + 1)];
+                        }
+                        integrate(grey, rw, rh, sums, squares);
+                        local(grey, rx0, ry0, rw, rh, sums, squares, x0, y0, x1, y1, before, after);
+                    }
+                }
+            }
+
+            if (counts != null) {
+                synchronized (histogram) {
+                    for (int i = 0; i != 256; i++) histogram[i] += counts[i];
+                }
+            }
+        }
+
+        // Thresholds the pixels of a tile against the mean and deviation of the window around each
+        private void local(int[] grey, int rx0, int ry0, int rw, int rh, long[] sums, long[] squares,
+                           int x0, int y0, int x1, int y1, int before, int after) {
+            int stride = rw + 1, words = bin.getStride();
+            long[] bits = bin.getBits();
+            boolean sauvola = method == Method.SAUVOLA;
+            for (int y = y0; y != y1; y++) {
+                // Rows of the window, relative to the region and clipped to it
+                int top = Math.max(y - before, ry0) - ry0, bottom = Math.min(y + after + 1, ry0 + rh) - ry0;
+                int above = top * stride, below = bottom * stride, at = (y - ry0) * rw - rx0;
+                // Tiles start on a word, so each run of 64 pixels fills a word of the bitmap
+                for (int wx = x0; wx < x1; wx += 64) {
+                    long word = 0;
+                    for (int x = wx, end = Math.min(wx + 64, x1); x != end; x++) {
+                        int left = Math.max(x - before, rx0) - rx0, right = Math.min(x + after + 1, rx0 + rw) - rx0;
+                        double scale = 1.0 / ((right - left) * (bottom - top));
+                        long sum = sums[below + right] - sums[above + right] - sums[below + left] + sums[above + left];
+                        long square = squares[below + right] - squares[above + right]
+                                - squares[below + left] + squares[above + left];
+                        double mean = sum * scale;
+                        double deviation = Math.sqrt(Math.max(square * scale - mean * mean, 0));
+                        double threshold = sauvola ? mean * (1 + k * (deviation / RANGE - 1)) : mean + k * deviation;
+                        if (grey[at + x] < threshold) word |= 1L << x;
+                    }
+                    bits[y * words + (wx >>> 6)] = word;
+                }
+            }
+        }
+    }
+
+    // Builds summed-area tables of grey levels and their squares, with a row and column of zeros before the first
+    private static void integrate(int[] grey, int w, int h, long[] sums, long[] squares) {
+        int stride = w + 1;
+        for (int x = 0; x != stride; x++) {
+            sums[x] = 0;
+            squares[x] = 0;
+        }
+        for (int y = 0; y != h; y++) {
+            int above = y * stride, at = above + stride;
+            sums[at] = 0;
+            squares[at] = 0;
+            long sum = 0, square = 0;
+            for (int x = 0; x != w; x++) {
+                int g = grey[y * w + x];
+                sum += g;
+                square += g * g;
+                sums[at + x + 1] = sums[above + x + 1] + sum;
+                squares[at + x + 1] = squares[above + x + 1] + square;
+            }
+        }
+    }
+
+    /**
+     * Reads the grey levels of a region of an image, from 0 for black to 255 for white.
+     * <p/>
+     * Grey and RGB images are read from their raster; any other image goes through its colour model. Translucent
+     * pixels are composited over white, as the page would look printed.
+     */
+    static void read(BufferedImage image, int x, int y, int w, int h, int[] grey, int[] row) {
+        Raster raster = image.getRaster();
+        switch (image.getType()) {
+            case BufferedImage.TYPE_BYTE_GRAY:
+                raster.getSamples(x, y, w, h, 0, grey);
+                break;
+            case BufferedImage.TYPE_USHORT_GRAY:
+                raster.getSamples(x, y, w, h, 0, grey);
+                for (int i = 0; i != w * h; i++) grey[i] >>>= 8;
+                break;
+            case BufferedImage.TYPE_INT_RGB:
+                for (int _y = 0; _y != h; _y++) {
+                    raster.getDataElements(x, y + _y, w, 1, row);
+                    luma(row, grey, _y * w, w, OPAQUE);
+                }
+                break;
+            case BufferedImage.TYPE_INT_ARGB:
+                for (int _y = 0; _y != h; _y++) {
+                    raster.getDataElements(x, y + _y, w, 1, row);
+                    luma(row, grey, _y * w, w, STRAIGHT);
+                }
+                break;
+            case BufferedImage.TYPE_INT_ARGB_PRE:
+                for (int _y = 0; _y != h; _y++) {
+                    raster.getDataElements(x, y + _y, w, 1, row);
+                    luma(row, grey, _y * w, w, PREMULTIPLIED);
+                }
+                break;
+            default:
+                // getRGB hands back unpremultiplied ARGB, fully opaque for images without alpha
+                for (int _y = 0; _y != h; _y++) {
+                    image.getRGB(x, y + _y, w, 1, row, 0, w);
+                    luma(row, grey, _y * w, w, STRAIGHT);
+                }
+        }
+    }
+
+    /**
+     * Converts a row of packed pixels to grey levels.
+     * <p/>
+     * Luma is linear in the channels, so compositing over white can be done on it rather than on each channel: a
+     * straight pixel is scaled by its alpha first, while a premultiplied one already has been.
+     */
+    private static void luma(int[] argb, int[] grey, int offset, int w, int alpha) {
+        for (int i = 0; i != w; i++) {
+            int p = argb[i];
+            int luma = (77 * ((p >> 16) & 0xFF) + 150 * ((p >> 8) & 0xFF) + 29 * (p & 0xFF)) >> 8;
+            int a = p >>> 24;
+            if (alpha == STRAIGHT) {
+                luma = (luma * a + 127) / 255 + 255 - a;
+            } else if (alpha == PREMULTIPLIED) {
+                luma = Math.min(luma + 255 - a, 255);
+            }
+            grey[offset + i] = luma;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package tk.ivybits.neural.ocr;
+
+import lombok.Getter;
+
+import java.awt.*;
+import java.awt.image.*;
+import java.util.Arrays;
+
+/**
+ * A packed one-bit-per-pixel bitmap.
+ * <p/>
+ * Pixels are stored row by row, each row occupying {@link #getStride()} {@code long} words with the leftmost pixel in
+ * the least significant bit. A set bit marks an "on" (ink) pixel; bits past the right edge of a row are always clear.
+ */
+public class BinaryImage {
+    private static final int OFF = Color.WHITE.getRGB();
+
+    @Getter
+    protected final int width, height;
+    /**
+     * The number of words per row.
+     */
+    @Getter
+    protected final int stride;
+    @Getter
+    protected final long[] bits;
+
+    public BinaryImage(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.stride = (width + 63) >>> 6;
+        this.bits = new long[stride * height];
+    }
+
+    /**
+     * Converts an image to a bitmap, treating every pixel which is not pure white as on.
+     * <p/>
+     * The raster is read a row at a time; common image types are decoded without going through the image's
+     * {@link ColorModel}.
+     *
+     * @param image The image to convert.
+     * @return A new bitmap of the same dimensions.
+     */
+    public static BinaryImage of(BufferedImage image) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        BinaryImage bin = new BinaryImage(w, h);
+        WritableRaster raster = image.getRaster();
+
+        switch (image.getType()) {
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_BGR: {
+                int[] row = new int[w];
+                for (int y = 0; y != h; y++) {
+                    raster.getDataElements(0, y, w, 1, row);
+                    for (int x = 0; x != w; x++) {
+                        if ((row[x] & 0xFFFFFF) != 0xFFFFFF) bin.set(x, y);
+                    }
+                }
+                break;
+            }
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_INT_ARGB_PRE: {
+                int[] row = new int[w];
+                for (int y = 0; y != h; y++) {
+                    raster.getDataElements(0, y, w, 1, row);
+                    for (int x = 0; x != w; x++) {
+                        if (row[x] != OFF) bin.set(x, y);
+                    }
+                }
+                break;
+            }
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_4BYTE_ABGR:
+            case BufferedImage.TYPE_4BYTE_ABGR_PRE: {
+                int bands = raster.getNumDataElements();
+                byte[] row = new byte[w * bands];
+                for (int y = 0; y != h; y++) {
+                    raster.getDataElements(0, y, w, 1, row);
+                    for (int x = 0, i = 0; x != w; x++) {
+                        int and = 0xFF;
+                        for (int b = 0; b != bands; b++) and &= row[i++];
+                        if (and != 0xFF) bin.set(x, y);
+                    }
+                }
+                break;
+            }
+            case BufferedImage.TYPE_BYTE_BINARY:
+            case BufferedImage.TYPE_BYTE_INDEXED: {
+                // Resolve the palette once instead of on every pixel
+                IndexColorModel palette = (IndexColorModel) image.getColorModel();
+                boolean[] ink = new boolean[palette.getMapSize()];
+                for (int i = 0; i != ink.length; i++) {
+                    ink[i] = palette.getRGB(i) != OFF;
+                }
+                int[] row = new int[w];
+                for (int y = 0; y != h; y++) {
+                    raster.getSamples(0, y, w, 1, 0, row);
+                    for (int x = 0; x != w; x++) {
+                        if (ink[row[x]]) bin.set(x, y);
+                    }
+                }
+                break;
+            }
+            default: {
+                int[] row = new int[w];
+                for (int y = 0; y != h; y++) {
+                    image.getRGB(0, y, w, 1, row, 0, w);
+                    for (int x = 0; x != w; x++) {
+                        if (row[x] != OFF) bin.set(x, y);
+                    }
+                }
+            }
+        }
+        return bin;
+    }
+
+    /**
+     * Renders this bitmap as a black-on-white {@link BufferedImage#TYPE_BYTE_BINARY} image.
+     *
+     * @return A new image of the same dimensions.
+     */
+    public BufferedImage toBufferedImage() {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY);
+        // The default palette maps 0 to black and 1 to white; rows are packed most significant bit first
+        byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        int scan = (width + 7) >>> 3;
+        for (int y = 0; y != height; y++) {
+            int base = y * stride;
+            for (int k = 0; k != scan; k++) {
+                int b = (int) (bits[base + (k >>> 3)] >>> ((k & 7) << 3)) & 0xFF;
+                data[y * scan + k] = (byte) ~(Integer.reverse(b) >>> 24);
+            }
+        }
+        return image;
+    }
+
+    public boolean get(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) return false;
+        return (bits[y * stride + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    public void set(int x, int y) {
+        checkBounds(x, y);
+        bits[y * stride + (x >>> 6)] |= 1L << x;
+    }
+
+    public void clear(int x, int y) {
+        checkBounds(x, y);
+        bits[y * stride + (x >>> 6)] &= ~(1L << x);
+    }
+
+    public void set(int x, int y, boolean on) {
+        if (on)
+            set(x, y);
+        else
+            clear(x, y);
+    }
+
+    /**
+     * Turns on a horizontal run of pixels.
+     *
+     * @param y     The row of the run.
+     * @param fromX The first column of the run.
+     * @param toX   The column after the last column of the run.
+     */
+    public void setRun(int y, int fromX, int toX) {
+        if (fromX >= toX) return;
+        checkBounds(fromX, y);
+        checkBounds(toX - 1, y);
+        int base = y * stride, first = fromX >>> 6, last = (toX - 1) >>> 6;
+        long firstMask = -1L << fromX, lastMask = -1L >>> -toX;
+        if (first == last) {
+            bits[base + first] |= firstMask & lastMask;
+        } else {
+            bits[base + first] |= firstMask;
+            for (int i = first + 1; i < last; i++) bits[base + i] = -1L;
+            bits[base + last] |= lastMask;
+        }
+    }
+
+    /**
+     * @return The column of the first on pixel of row {@code y} at or after column {@code x}, or {@code -1} if there
+     * is none.
+     */
+    public int nextSetBit(int x, int y) {
+        if (x >= width) return -1;
+        int base = y * stride, i = x >>> 6;
+        long word = bits[base + i] & (-1L << x);
+        while (word == 0) {
+            if (++i == stride) return -1;
+            word = bits[base + i];
+        }
+        return (i << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * @return The column of the first off pixel of row {@code y} at or after column {@code x}, or the width of this
+     * bitmap if there is none.
+     */
+    public int nextClearBit(int x, int y) {
+        if (x >= width) return width;
+        int base = y * stride, i = x >>> 6;
+        long word = ~bits[base + i] & (-1L << x);
+        while (word == 0) {
+            if (++i == stride) return width;
+            word = ~bits[base + i];
+        }
+        return Math.min(width, (i << 6) + Long.numberOfTrailingZeros(word));
+    }
+
+    /**
+     * Tests whether any pixel within a rectangle is on.
+     *
+     * @return True if any pixel in the inclusive range [{@code x0}, {@code x1}] x [{@code y0}, {@code y1}] is on.
+     */
+    public boolean any(int x0, int y0, int x1, int y1) {
+        x0 = Math.max(x0, 0);
+        y0 = Math.max(y0, 0);
+        x1 = Math.min(x1, width - 1);
+        y1 = Math.min(y1, height - 1);
+        if (x0 > x1 || y0 > y1) return false;
+        int first = x0 >>> 6, last = x1 >>> 6;
+        long firstMask = -1L << x0, lastMask = -1L >>> (63 - (x1 & 63));
+        for (int y = y0; y <= y1; y++) {
+            int base = y * stride;
+            if (first == last) {
+                if ((bits[base + first] & firstMask & lastMask) != 0) return true;
+            } else {
+                if ((bits[base + first] & firstMask) != 0 || (bits[base + last] & lastMask) != 0) return true;
+                for (int i = first + 1; i < last; i++) {
+                    if (bits[base + i] != 0) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public BinaryImage copy() {
+        BinaryImage copy = new BinaryImage(width, height);
+        System.arraycopy(bits, 0, copy.bits, 0, bits.length);
+        return copy;
+    }
+
+    /**
+     * Copies a region of this bitmap into a new bitmap.
+     *
+     * @return A new bitmap of size {@code w}x{@code h} whose origin is ({@code x}, {@code y}) in this bitmap.
+     */
+    public BinaryImage crop(int x, int y, int w, int h) {
+        BinaryImage crop = new BinaryImage(w, h);
+        for (int _y = 0; _y != h; _y++) {
+            if (y + _y < 0 || y + _y >= height) continue;
+            for (int i = 0; i != crop.stride; i++) {
+                crop.bits[_y * crop.stride + i] = wordAt(x + (i << 6), y + _y);
+            }
+            // Keep the padding past the right edge clear
+            if ((w & 63) != 0) crop.bits[_y * crop.stride + crop.stride - 1] &= -1L >>> (64 - (w & 63));
+        }
+        return crop;
+    }
+
+    /**
+     * Reads up to 64 consecutive pixels of a row; pixels outside the bitmap read as off.
+     *
+     * @return The pixels of row {@code y} starting at column {@code x}, leftmost in the least significant bit.
+     */
+    public long wordAt(int x, int y) {
+        if (y < 0 || y >= height || x >= width || x <= -64) return 0;
+        if (x < 0) return wordAt(0, y) << -x;
+        int base = y * stride, i = x >>> 6, s = x & 63;
+        long word = bits[base + i] >>> s;
+        if (s != 0 && i + 1 < stride) word |= bits[base + i + 1] << (64 - s);
+        return word;
+    }
+
+    /**
+     * @return The number of on pixels.
+     */
+    public int cardinality() {
+        int n = 0;
+        for (long word : bits) n += Long.bitCount(word);
+        return n;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof BinaryImage)) return false;
+        BinaryImage other = (BinaryImage) o;
+        return width == other.width && height == other.height && Arrays.equals(bits, other.bits);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * width + height) + Arrays.hashCode(bits);
+    }
+
+    private void checkBounds(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height)
+            throw new IndexOutOfBoundsException("(" + x + ", " + y + ") outside " + width + "x" + height);
+    }
+}
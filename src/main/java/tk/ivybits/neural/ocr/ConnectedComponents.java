@@ -0,0 +1,467 @@
+package tk.ivybits.neural.ocr;
+
+import lombok.Getter;
+
+import java.awt.*;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 8-connected component labeling of a {@link BinaryImage}.
+ * <p/>
+ * The bitmap is scanned once, row by row, as horizontal runs of on pixels. Each run is either given a new
+ * provisional label or joined to the runs it touches in the previous row through a union-find forest. Bounding box,
+ * pixel count and coordinate sums are accumulated per provisional label during the scan and folded into the final
+ * components afterwards, so no per-pixel objects are ever allocated.
+ * <p/>
+ * Large bitmaps can be labeled in bands of rows on a {@link ForkJoinPool}, with the components of neighbouring bands
+ * joined afterwards; see {@link #label(BinaryImage, ForkJoinPool)}.
+ * <p/>
+ * Components are numbered from 0 in the order their first pixel appears in raster order. The runs double as a
+ * compact label map: {@link #labelAt(int, int)} and {@link #mask(int)} read them without re-scanning the bitmap.
+ */
+public class ConnectedComponents {
+    // The number of rows labeled together by a single task
+    private static final int BAND = 256;
+
+    @Getter
+    protected final int width, height;
+    @Getter
+    protected int count;
+    @Getter
+    protected int runCount;
+
+    // Runs in raster order; runEnd is exclusive
+    protected int[] runRow, runStart, runEnd, runLabel;
+    // Index of the first run of each row, with one extra entry marking the end of the last row
+    protected final int[] rowFirstRun;
+    // Runs of each component, chained in raster order
+    protected int[] firstRun, nextRun;
+
+    protected int[] left, top, right, bottom, area;
+    protected long[] sumX, sumY;
+
+    protected ConnectedComponents(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.rowFirstRun = new int[height + 1];
+    }
+
+    public static ConnectedComponents label(BinaryImage image) {
+        return label(image, null);
+    }
+
+    /**
+     * Labels a bitmap, a band of rows at a time.
+     * <p/>
+     * The bitmap is cut into bands of {@value #BAND} rows which are labeled independently, each with working memory
+     * bounded by its own runs, and spread over the pool. The components of neighbouring bands which touch across the
+     * row between them are then joined through a union-find forest over the components of every band. The result is
+     * identical to labeling the bitmap in one pass.
+     *
+     * @param pool The pool bands are labeled on, or null to label the bitmap in one pass on the calling thread.
+     */
+    public static ConnectedComponents label(BinaryImage image, ForkJoinPool pool) {
+        int h = image.getHeight();
+        final Band[] bands = new Band[pool != null ? Math.max((h + BAND - 1) / BAND, 1) : 1];
+        for (int b = 0; b != bands.length; b++) {
+            bands[b] = new Band(image, (int) ((long) h * b / bands.length), (int) ((long) h * (b + 1) / bands.length));
+        }
+        if (bands.length == 1) {
+            bands[0].compute();
+        } else {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(bands);
+                }
+            });
+        }
+        return stitch(image.getWidth(), h, bands);
+    }
+
+    /**
+     * Joins the components of neighbouring bands which touch across the row between them.
+     */
+    private static ConnectedComponents stitch(int w, int h, Band[] bands) {
+        ConnectedComponents cc = new ConnectedComponents(w, h);
+
+        // The components of every band, numbered one band after the other; this is raster order of their first pixels
+        int[] first = new int[bands.length + 1];
+        for (int b = 0; b != bands.length; b++) {
+            first[b + 1] = first[b] + bands[b].count;
+        }
+        int[] parent = new int[first[bands.length]];
+        for (int l = 0; l != parent.length; l++) parent[l] = l;
+
+        for (int b = 0; b + 1 < bands.length; b++) {
+            Band above = bands[b], below = bands[b + 1];
+            if (above.y1 == above.y0 || below.y1 == below.y0) continue;
+            // The runs of the last row of one band and of the first row of the next
+            int p = above.rowFirstRun[above.y1 - above.y0 - 1], prevLast = above.runs;
+            int last = below.y1 - below.y0 > 1 ? below.rowFirstRun[1] : below.runs;
+            for (int r = 0; r != last; r++) {
+                int x = below.runStart[r], end = below.runEnd[r];
+                while (p < prevLast && above.runEnd[p] < x) p++;
+                for (int q = p; q < prevLast && above.runStart[q] <= end; q++) {
+                    int root = find(parent, first[b] + above.runLabel[q]);
+                    int label = find(parent, first[b + 1] + below.runLabel[r]);
+                    // Keep the oldest label as the root so roots stay in raster order
+                    if (root < label)
+                        parent[label] = root;
+                    else if (label < root)
+                        parent[root] = label;
+                }
+            }
+        }
+
+        // Number the roots in raster order and fold the statistics of every band's components into them
+        int[] component = new int[parent.length];
+        int count = 0;
+        for (int l = 0; l != parent.length; l++) {
+            component[l] = find(parent, l) == l ? count++ : -1;
+        }
+        cc.count = count;
+        cc.left = new int[count];
+        cc.top = new int[count];
+        cc.right = new int[count];
+        cc.bottom = new int[count];
+        cc.area = new int[count];
+        cc.sumX = new long[count];
+        cc.sumY = new long[count];
+        Arrays.fill(cc.left, Integer.MAX_VALUE);
+        Arrays.fill(cc.top, Integer.MAX_VALUE);
+        int runs = 0;
+        for (int b = 0; b != bands.length; b++) {
+            Band band = bands[b];
+            for (int l = 0; l != band.count; l++) {
+                int c = component[find(parent, first[b] + l)];
+                cc.left[c] = Math.min(cc.left[c], band.left[l]);
+                cc.top[c] = Math.min(cc.top[c], band.top[l]);
+                cc.right[c] = Math.max(cc.right[c], band.right[l]);
+                cc.bottom[c] = Math.max(cc.bottom[c], band.bottom[l]);
+                cc.area[c] += band.area[l];
+                cc.sumX[c] += band.sumX[l];
+                cc.sumY[c] += band.sumY[l];
+            }
+            runs += band.runs;
+        }
+
+        // Concatenate the runs of every band, which keeps them in raster order
+        if (bands.length == 1) {
+            Band band = bands[0];
+            cc.runRow = band.runRow;
+            cc.runStart = band.runStart;
+            cc.runEnd = band.runEnd;
+            cc.runLabel = band.runLabel;
+            System.arraycopy(band.rowFirstRun, 0, cc.rowFirstRun, 0, h);
+        } else {
+            cc.runRow = new int[runs];
+            cc.runStart = new int[runs];
+            cc.runEnd = new int[runs];
+            cc.runLabel = new int[runs];
+            for (int b = 0, offset = 0; b != bands.length; b++) {
+                Band band = bands[b];
+                System.arraycopy(band.runRow, 0, cc.runRow, offset, band.runs);
+                System.arraycopy(band.runStart, 0, cc.runStart, offset, band.runs);
+                System.arraycopy(band.runEnd, 0, cc.runEnd, offset, band.runs);
+                System.arraycopy(band.runLabel, 0, cc.runLabel, offset, band.runs);
+                for (int y = band.y0; y != band.y1; y++) {
+                    cc.rowFirstRun[y] = band.rowFirstRun[y - band.y0] + offset;
+                }
+                for (int r = offset; r != offset + band.runs; r++) {
+                    cc.runLabel[r] += first[b];
+                }
+                offset += band.runs;
+            }
+        }
+        cc.rowFirstRun[h] = runs;
+
+        // Resolve run labels and chain the runs of each component
+        cc.runCount = runs;
+        cc.firstRun = new int[count];
+        cc.nextRun = new int[runs];
+        Arrays.fill(cc.firstRun, -1);
+        for (int r = runs - 1; r >= 0; r--) {
+            int c = component[find(parent, cc.runLabel[r])];
+            cc.runLabel[r] = c;
+            cc.nextRun[r] = cc.firstRun[c];
+            cc.firstRun[c] = r;
+        }
+        return cc;
+    }
+
+    private static int find(int[] parent, int label) {
+        int root = label;
+        while (parent[root] != root) root = parent[root];
+        // Path compression
+        while (parent[label] != root) {
+            int next = parent[label];
+            parent[label] = root;
+            label = next;
+        }
+        return root;
+    }
+
+    /**
+     * @return The bounding box of a component, inclusive of its rightmost column and bottom row.
+     */
+    public Rectangle getBounds(int component) {
+        return new Rectangle(left[component], top[component],
+                right[component] - left[component] + 1, bottom[component] - top[component] + 1);
+    }
+
+    public int getLeft(int component) {
+        return left[component];
+    }
+
+    public int getTop(int component) {
+        return top[component];
+    }
+
+    public int getRight(int component) {
+        return right[component];
+    }
+
+    public int getBottom(int component) {
+        return bottom[component];
+    }
+
+    /**
+     * @return The number of pixels in a component.
+     */
+    public int getArea(int component) {
+        return area[component];
+    }
+
+    public double getCentroidX(int component) {
+        return (double) sumX[component] / area[component];
+    }
+
+    public double getCentroidY(int component) {
+        return (double) sumY[component] / area[component];
+    }
+
+    /**
+     * @return The component a pixel belongs to, or {@code -1} if the pixel is off.
+     */
+    public int labelAt(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) return -1;
+        // Binary search for the last run of the row starting at or before x
+        int lo = rowFirstRun[y], hi = rowFirstRun[y + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (runStart[mid] <= x)
+                lo = mid + 1;
+            else
+                hi = mid - 1;
+        }
+        return hi >= rowFirstRun[y] && x < runEnd[hi] ? runLabel[hi] : -1;
+    }
+
+    /**
+     * Reads up to 64 consecutive pixels of a row which belong to any of the given components, from the runs.
+     *
+     * @param labels The components to read.
+     * @return The pixels of row {@code y} starting at column {@code x}, leftmost in the least significant bit.
+     * @see BinaryImage#wordAt(int, int)
+     */
+    public long wordAt(int x, int y, int[] labels) {
+        if (y < 0 || y >= height) return 0;
+        // Binary search for the first run of the row ending after x
+        int lo = rowFirstRun[y], end = rowFirstRun[y + 1], hi = end - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (runEnd[mid] <= x)
+                lo = mid + 1;
+            else
+                hi = mid - 1;
+        }
+        long word = 0;
+        for (int r = lo; r != end && runStart[r] - x < 64; r++) {
+            if (!contains(labels, runLabel[r])) continue;
+            int from = Math.max(runStart[r] - x, 0), to = Math.min(runEnd[r] - x, 64);
+            word |= (to - from == 64 ? -1L : (1L << (to - from)) - 1) << from;
+        }
+        return word;
+    }
+
+    /**
+     * @param labels The components to look for.
+     * @return Whether every on pixel in a rectangle belongs to one of the given components.
+     */
+    public boolean holdsOnly(int x, int y, int width, int height, int[] labels) {
+        for (int row = Math.max(y, 0); row < Math.min(y + height, this.height); row++) {
+            for (int r = rowFirstRun[row]; r != rowFirstRun[row + 1] && runStart[r] < x + width; r++) {
+                if (runEnd[r] > x && !contains(labels, runLabel[r])) return false;
+            }
+        }
+        return true;
+    }
+
+    // Glyphs are made of a handful of components, so a linear search beats anything cleverer
+    private static boolean contains(int[] labels, int label) {
+        for (int l : labels) {
+            if (l == label) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Extracts the pixels of a single component.
+     *
+     * @return A bitmap the size of the component's bounding box, holding only the component's pixels.
+     */
+    public BinaryImage mask(int component) {
+        int x = left[component], y = top[component];
+        BinaryImage mask = new BinaryImage(right[component] - x + 1, bottom[component] - y + 1);
+        for (int r = firstRun[component]; r >= 0; r = nextRun[r]) {
+            mask.setRun(runRow[r] - y, runStart[r] - x, runEnd[r] - x);
+        }
+        return mask;
+    }
+
+    // Labels a band of rows on its own, numbering its components in raster order
+    private static class Band extends RecursiveAction {
+        final BinaryImage image;
+        // The rows of the band; y1 is exclusive
+        final int y0, y1;
+        // Runs in raster order, labeled with the band's components; runEnd is exclusive
+        int runs;
+        int[] runRow, runStart, runEnd, runLabel;
+        // Index of the first run of each row of the band
+        final int[] rowFirstRun;
+        int count;
+        int[] left, top, right, bottom, area;
+        long[] sumX, sumY;
+
+        Band(BinaryImage image, int y0, int y1) {
+            this.image = image;
+            this.y0 = y0;
+            this.y1 = y1;
+            this.rowFirstRun = new int[y1 - y0];
+        }
+
+        @Override
+        protected void compute() {
+            int capacity = 64;
+            int[] runRow = new int[capacity], runStart = new int[capacity], runEnd = new int[capacity];
+            int[] runLabel = new int[capacity];
+            int runs = 0;
+
+            // Union-find forest and statistics over provisional labels
+            int labels = 0;
+            int[] parent = new int[capacity];
+            int[] left = new int[capacity], top = new int[capacity], right = new int[capacity];
+            int[] bottom = new int[capacity], area = new int[capacity];
+            long[] sumX = new long[capacity], sumY = new long[capacity];
+
+            int prevFirst = 0, prevLast = 0;
+            for (int y = y0; y != y1; y++) {
+                rowFirstRun[y - y0] = runs;
+                int p = prevFirst;
+                for (int x = image.nextSetBit(0, y); x >= 0; x = image.nextSetBit(x, y)) {
+                    int end = image.nextClearBit(x, y);
+
+                    if (runs == runRow.length) {
+                        int grown = runs * 2;
+                        runRow = Arrays.copyOf(runRow, grown);
+                        runStart = Arrays.copyOf(runStart, grown);
+                        runEnd = Arrays.copyOf(runEnd, grown);
+                        runLabel = Arrays.copyOf(runLabel, grown);
+                    }
+
+                    // Skip runs of the previous row which end before this one could touch them diagonally
+                    while (p < prevLast && runEnd[p] < x) p++;
+                    int label = -1;
+                    // Runs of the previous row which overlap [x - 1, end] are 8-connected to this one. The last of
+                    // them can also touch the next run of this row, so p is left where it is
+                    for (int q = p; q < prevLast && runStart[q] <= end; q++) {
+                        int root = find(parent, runLabel[q]);
+                        if (label < 0) {
+                            label = root;
+                        } else if (root != label) {
+                            // Keep the oldest label as the root so roots stay in raster order
+                            int lo = Math.min(root, label), hi = Math.max(root, label);
+                            parent[hi] = lo;
+                            label = lo;
+                        }
+                    }
+                    if (label < 0) {
+                        if (labels == parent.length) {
+                            int grown = labels * 2;
+                            parent = Arrays.copyOf(parent, grown);
+                            left = Arrays.copyOf(left, grown);
+                            top = Arrays.copyOf(top, grown);
+                            right = Arrays.copyOf(right, grown);
+                            bottom = Arrays.copyOf(bottom, grown);
+                            area = Arrays.copyOf(area, grown);
+                            sumX = Arrays.copyOf(sumX, grown);
+                            sumY = Arrays.copyOf(sumY, grown);
+                        }
+                        label = labels++;
+                        parent[label] = label;
+                        left[label] = Integer.MAX_VALUE;
+                        top[label] = y;
+                        right[label] = 0;
+                        bottom[label] = y;
+                    }
+
+                    left[label] = Math.min(left[label], x);
+                    right[label] = Math.max(right[label], end - 1);
+                    bottom[label] = y;
+                    int n = end - x;
+                    area[label] += n;
+                    // Sum of x over [x, end), and of y over the run
+                    sumX[label] += (long) (x + end - 1) * n / 2;
+                    sumY[label] += (long) y * n;
+
+                    runRow[runs] = y;
+                    runStart[runs] = x;
+                    runEnd[runs] = end;
+                    runLabel[runs] = label;
+                    runs++;
+                    x = end;
+                }
+                prevFirst = rowFirstRun[y - y0];
+                prevLast = runs;
+            }
+
+            // Number the roots in raster order and fold the statistics of every provisional label into them
+            int[] component = new int[labels];
+            int count = 0;
+            for (int l = 0; l != labels; l++) {
+                component[l] = find(parent, l) == l ? count++ : -1;
+            }
+            this.count = count;
+            this.left = new int[count];
+            this.top = new int[count];
+            this.right = new int[count];
+            this.bottom = new int[count];
+            this.area = new int[count];
+            this.sumX = new long[count];
+            this.sumY = new long[count];
+            Arrays.fill(this.left, Integer.MAX_VALUE);
+            Arrays.fill(this.top, Integer.MAX_VALUE);
+            for (int l = 0; l != labels; l++) {
+                int c = component[find(parent, l)];
+                this.left[c] = Math.min(this.left[c], left[l]);
+                this.top[c] = Math.min(this.top[c], top[l]);
+                this.right[c] = Math.max(this.right[c], right[l]);
+                this.bottom[c] = Math.max(this.bottom[c], bottom[l]);
+                this.area[c] += area[l];
+                this.sumX[c] += sumX[l];
+                this.sumY[c] += sumY[l];
+            }
+            for (int r = 0; r != runs; r++) {
+                runLabel[r] = component[find(parent, runLabel[r])];
+            }
+            this.runs = runs;
+            this.runRow = runRow;
+            this.runStart = runStart;
+            this.runEnd = runEnd;
+            this.runLabel = runLabel;
+        }
+    }
+}
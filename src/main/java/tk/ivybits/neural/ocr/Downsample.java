@@ -59,4 +59,43 @@ public class Downsample {
             }
         }
     }
-}
\ No newline at end of file
+
+    public static void downSample(BinaryImage source, double[][] data) {
+        int srcH = source.getHeight();
+        int stride = source.getStride();
+        long[] bits = source.getBits();
+        int dstW = data.length;
+        int dstH = data[0].length;
+
+        int downSampleLeft = Integer.MAX_VALUE;
+        int downSampleTop = Integer.MAX_VALUE;
+        int downSampleRight = 0;
+        int downSampleBottom = 0;
+
+        // Find the extremities of the glyph a word at a time
+        for (int _y = 0; _y < srcH; _y++) {
+            for (int i = 0; i < stride; i++) {
+                long word = bits[_y * stride + i];
+                if (word == 0) continue;
+                downSampleLeft = Math.min(downSampleLeft, (i << 6) + Long.numberOfTrailingZeros(word));
+                downSampleRight = Math.max(downSampleRight, (i << 6) + 63 - Long.numberOfLeadingZeros(word));
+                downSampleTop = Math.min(downSampleTop, _y);
+                downSampleBottom = Math.max(downSampleBottom, _y);
+            }
+        }
+
+        double ratioX = (double) (downSampleRight - downSampleLeft) / (double) dstW;
+        double ratioY = (double) (downSampleBottom - downSampleTop) / (double) dstH;
+
+        for (int y = 0; y < dstH; y++) {
+            for (int x = 0; x < dstW; x++) {
+                int startX = (int) (downSampleLeft + (x * ratioX));
+                int startY = (int) (downSampleTop + (y * ratioY));
+                int endX = (int) (startX + ratioX);
+                int endY = (int) (startY + ratioY);
+
+                data[x][y] = source.any(startX, startY, endX, endY) ? .5 : -.5;
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package tk.ivybits.neural.ocr;
+
+import lombok.Getter;
+import tk.ivybits.neural.network.kohonen.HammingIndex;
+
+import java.util.Arrays;
+
+/**
+ * Downsamples glyphs through a summed-area table of their ink.
+ * <p/>
+ * The table is built in a single row-major pass over the glyph's bounding box, after which the amount of ink in any
+ * cell is read in constant time, so a cell can report the fraction of it covered by ink rather than only whether it
+ * holds any. Cells are laid out exactly as by {@link Downsample#downSample(BinaryImage, double[][])}.
+ * <p/>
+ * Glyphs are read in place through a {@link GlyphView}. A downsampler keeps its table from one glyph to the next, so it stops
+ * allocating once it has seen the largest glyph, and must not be shared between threads.
+ */
+public class Downsampler {
+    @Getter
+    protected final int width, height;
+    // The first and last column, and first and last row, of each cell, with the last ones exclusive
+    private final int[] columns, rows;
+    // The ink above and to the left of each corner in columns, for every row of the bounding box and one before it
+    private int[] table = new int[0];
+    // The bits left of each corner in columns, within the word holding the corner
+    private final long[] masks;
+    // The words of the row being added to the table
+    private long[] words = new long[1];
+
+    /**
+     * @param width  The number of cells across.
+     * @param height The number of cells down.
+     */
+    public Downsampler(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.columns = new int[2 * width];
+        this.rows = new int[2 * height];
+        this.masks = new long[2 * width];
+    }
+
+    public void downSample(BinaryImage source, boolean coverage, double[] input) {
+        downSample(new GlyphView(source), coverage, input);
+    }
+
+    /**
+     * Downsamples a region of a bitmap.
+     *
+     * @see #downSample(GlyphView, boolean, double[])
+     */
+    public void downSample(BinaryImage source, int x, int y, int w, int h, boolean coverage, double[] input) {
+        downSample(new GlyphView(source, x, y, w, h), coverage, input);
+    }
+
+    /**
+     * Downsamples a glyph.
+     *
+     * @param glyph    The glyph, read in place.
+     * @param coverage Whether each cell reports the fraction of it covered by ink, rather than whether it holds any.
+     * @param input    A buffer of at least {@code width * height} elements to receive one value per cell, row by row,
+     *                 from -0.5 for a cell without ink to 0.5 for a cell full of ink. Without coverage, every cell
+     *                 holding ink is 0.5.
+     */
+    public void downSample(GlyphView glyph, boolean coverage, double[] input) {
+        downSample(glyph, coverage, input, null);
+    }
+
+    /**
+     * Downsamples a glyph, also packing which cells come out positive.
+     *
+     * @param signs A buffer of at least {@code (width * height + 63) / 64} elements to receive one bit per cell, set
+     *              where the cell's value is positive, as {@link HammingIndex#pack(double[])} would pack
+     *              {@code input}; or null.
+     * @see #downSample(GlyphView, boolean, double[])
+     */
+    public void downSample(GlyphView glyph, boolean coverage, double[] input, long[] signs) {
+        if (signs != null) Arrays.fill(signs, 0, (width * height + 63) >>> 6, 0);
+        int w = glyph.getWidth(), h = glyph.getHeight();
+        int regionWords = (w + 63) >>> 6;
+
+        // Find the extremities of the glyph a word at a time, relative to the region
+        int left = Integer.MAX_VALUE, top = Integer.MAX_VALUE, right = -1, bottom = -1;
+        for (int _y = 0; _y < h; _y++) {
+            for (int i = 0; i < regionWords; i++) {
+                long word = glyph.wordAt(i << 6, _y);
+                if (word == 0) continue;
+                left = Math.min(left, (i << 6) + Long.numberOfTrailingZeros(word));
+                right = Math.max(right, (i << 6) + 63 - Long.numberOfLeadingZeros(word));
+                top = Math.min(top, _y);
+                bottom = Math.max(bottom, _y);
+            }
+        }
+        if (right < 0) {
+            for (int i = 0; i != width * height; i++) input[i] = -.5;
+            return;
+        }
+
+        double ratioX = (double) (right - left) / (double) width;
+        double ratioY = (double) (bottom - top) / (double) height;
+        // Inclusive corners of every cell, rounded as Downsample rounds them, relative to the bounding box
+        for (int cx = 0; cx < width; cx++) {
+            int startX = (int) (left + (cx * ratioX));
+            columns[2 * cx] = startX - left;
+            columns[2 * cx + 1] = (int) (startX + ratioX) - left + 1;
+        }
+        for (int cy = 0; cy < height; cy++) {
+            int startY = (int) (top + (cy * ratioY));
+            rows[2 * cy] = startY - top;
+            rows[2 * cy + 1] = (int) (startY + ratioY) - top + 1;
+        }
+
+        // The table only needs the columns cells start and end at; each row adds the ink left of each of them
+        int th = bottom - top + 1, span = 2 * width, rowWords = (right - left + 64) >>> 6;
+        int[] table = table((th + 1) * span);
+        long[] words = rowWords <= this.words.length ? this.words : (this.words = new long[rowWords]);
+        for (int k = 0; k != span; k++) table[k] = 0;
+        for (int k = 0; k != span; k++) {
+            int end = columns[k];
+            masks[k] = end == 0 ? 0 : -1L >>> -end;
+        }
+        for (int _y = 0; _y != th; _y++) {
+            int above = _y * span, row = above + span;
+            if (rowWords == 1) {
+                // The common case of a glyph narrower than a word
+                long word = glyph.wordAt(left, top + _y);
+                for (int k = 0; k != span; k++) {
+                    table[row + k] = table[above + k] + Long.bitCount(word & masks[k]);
+                }
+                continue;
+            }
+            for (int i = 0; i != rowWords; i++) {
+                words[i] = glyph.wordAt(left + (i << 6), top + _y);
+            }
+            for (int k = 0; k != span; k++) {
+                int end = columns[k], ink = 0, i = 0;
+                for (; end - (i << 6) > 64; i++) ink += Long.bitCount(words[i]);
+                table[row + k] = table[above + k] + ink + Long.bitCount(words[i] & masks[k]);
+            }
+        }
+
+        for (int cy = 0; cy < height; cy++) {
+            int y0 = rows[2 * cy] * span, y1 = rows[2 * cy + 1] * span;
+            for (int cx = 0; cx < width; cx++) {
+                int x0 = 2 * cx, x1 = x0 + 1;
+                int ink = table[y1 + x1] - table[y0 + x1] - table[y1 + x0] + table[y0 + x0];
+                double value;
+                if (coverage) {
+                    int area = (columns[x1] - columns[x0]) * (rows[2 * cy + 1] - rows[2 * cy]);
+                    value = (double) ink / area - .5;
+                } else {
+                    value = ink != 0 ? .5 : -.5;
+                }
+                int cell = cy * width + cx;
+                input[cell] = value;
+                if (signs != null && value > 0) signs[cell >>> 6] |= 1L << cell;
+            }
+        }
+    }
+
+    private int[] table(int size) {
+        if (table.length < size) table = new int[Math.max(size, table.length * 2)];
+        return table;
+    }
+}
@@ -1,6 +1,5 @@
 package tk.ivybits.neural.ocr;
 
-import java.awt.*;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.util.*;
@@ -9,120 +8,142 @@ import java.util.List;
 import static java.lang.Math.*;
 
 public class GlyphBounds {
-    private static final int OFF = Color.WHITE.getRGB();
-
     public static List<Rectangle2D> getBoundingBoxes(BufferedImage buffer) {
         return getBoundingBoxes(buffer, 5);
     }
 
     public static List<Rectangle2D> getBoundingBoxes(BufferedImage buffer, int threshold) {
-        List<LinkedList<Point>> chars = new ArrayList<>();
-        int srcW = buffer.getWidth();
-        int srcH = buffer.getHeight();
-
-        // Visited pixel nodes
-        boolean[][] visited = new boolean[srcW][srcH];
-
-        // Scanline on y axis
-        for (int y = 0; y != srcH; y++) {
-            for (int x = 0; x != srcW; x++) {
-                // We've found a nonvisited black pixel, floodfill through it
-                if (buffer.getRGB(x, y) != OFF && !visited[x][y]) {
-                    // Will hold all the points of the discovered character
-                    LinkedList<Point> character = new LinkedList<>();
-                    // Perform a BFS to explore entire character
-                    _fill(buffer, x, y, character, visited);
-                    chars.add(character);
-                }
-            }
-        }
+        return getBoundingBoxes(BinaryImage.of(buffer), threshold);
+    }
 
-        List<Rectangle2D> bounds = new ArrayList<>();
-        // Compute bounding boxes of each found character
-        for (LinkedList<Point> pts : chars) {
-            // Bounding box corners
-            int left = Integer.MAX_VALUE;
-            int top = Integer.MAX_VALUE;
-            int right = 0;
-            int bottom = 0;
+    public static List<Rectangle2D> getBoundingBoxes(BinaryImage buffer) {
+        return getBoundingBoxes(buffer, 5);
+    }
 
-            for (Point pt : pts) {
-                // Find extremities
-                left = min(left, pt.x);
-                top = min(top, pt.y);
-                right = max(right, pt.x);
-                bottom = max(bottom, pt.y);
-            }
+    public static List<Rectangle2D> getBoundingBoxes(BinaryImage buffer, int threshold) {
+        return getBoundingBoxes(ConnectedComponents.label(buffer), threshold);
+    }
 
-            bounds.add(new Rectangle2D.Float(left, top, right - left, bottom - top));
+    /**
+     * Computes the bounding boxes of glyphs from labeled components, collapsing components which overlap on the
+     * x-axis within a threshold into a single glyph.
+     *
+     * @param components The labeled components of a page.
+     * @param threshold  The tolerance, in pixels, within which one component's horizontal extent must lie inside
+     *                   another's for the two to be collapsed.
+     * @return The glyph bounding boxes, sorted from left to right.
+     */
+    public static List<Rectangle2D> getBoundingBoxes(ConnectedComponents components, int threshold) {
+        int n = components.getCount();
+        int[] minX = new int[n], minY = new int[n], maxX = new int[n], maxY = new int[n];
+        int top = collapse(components, threshold, minX, minY, maxX, maxY, null, null, null);
+
+        List<Rectangle2D> bounds = new ArrayList<>(top + 1);
+        for (int i = 0; i <= top; i++) {
+            bounds.add(new Rectangle2D.Float(minX[i], minY[i], maxX[i] - minX[i], maxY[i] - minY[i]));
         }
 
         // Sort from left to right
         Collections.sort(bounds, new Comparator<Rectangle2D>() {
             @Override
             public int compare(Rectangle2D o1, Rectangle2D o2) {
-                return (int) (o1.getCenterX() - o2.getCenterX());
+                return Double.compare(o1.getCenterX(), o2.getCenterX());
             }
         });
-
-        // Iteratively collapse bounding boxes
-        LinkedList<Rectangle2D> finalBounds = new LinkedList<>();
-        boolean changed;
-        do {
-            changed = false;
-            finalBounds.clear();
-            for (int i = 0; i < bounds.size(); i++) {
-                Rectangle2D p = bounds.get(i);
-                // Any intersecting bounding boxes will always be to the right of this bounding box
-                for (int j = i + 1; j < bounds.size(); j++) {
-                    Rectangle2D c = bounds.get(j);
-                    // Check if the two bounding boxes intersect on the x-axis within a threshold
-                    if ((p.getMaxX() < c.getMaxX() + threshold && p.getMinX() > c.getMinX() - threshold) ||
-                            (c.getMaxX() < p.getMaxX() + threshold && c.getMinX() > p.getMinX() - threshold)) {
-                        // Collapse the bounding boxes
-                        finalBounds.add(p.createUnion(c));
-                        // And remove the original ones
-                        bounds.remove(p);
-                        bounds.remove(c);
-                        changed = true;
-                    }
-                }
-            }
-
-            bounds.addAll(finalBounds);
-        } while (changed);
         return Collections.unmodifiableList(bounds);
     }
 
-    private static void _fill(BufferedImage buffer, int _x, int _y, LinkedList<Point> character, boolean[][] visited) {
-        LinkedList<Point> Q = new LinkedList<>();
+    public static List<GlyphView> getGlyphs(BinaryImage page, int threshold) {
+        return getGlyphs(page, ConnectedComponents.label(page), threshold);
+    }
 
-        // All possible directions - ordinal
-        int[] dx = {1, -1, -1, 1, 1, -1, 0, 0};
-        int[] dy = {-1, 1, -1, 1, 0, 0, 1, -1};
+    /**
+     * Segments a page into glyphs, collapsing components as {@link #getBoundingBoxes(ConnectedComponents, int)} does.
+     * <p/>
+     * Each glyph is a view of the page masked down to the components it was collapsed from, so ink of neighbouring
+     * glyphs reaching into its bounding box is left out. Unlike {@link #getBoundingBoxes(ConnectedComponents, int)},
+     * the bounds of a view include its rightmost column and bottom row.
+     *
+     * @param page       The page the components were labeled from.
+     * @param components The labeled components of the page.
+     * @param threshold  The tolerance, in pixels, within which components are collapsed.
+     * @return The glyphs, sorted from left to right.
+     */
+    public static List<GlyphView> getGlyphs(BinaryImage page, ConnectedComponents components, int threshold) {
+        int n = components.getCount();
+        int[] minX = new int[n], minY = new int[n], maxX = new int[n], maxY = new int[n];
+        // The components of each box on the stack, chained through next
+        int[] first = new int[n], last = new int[n], next = new int[n];
+        int top = collapse(components, threshold, minX, minY, maxX, maxY, first, last, next);
+
+        List<GlyphView> glyphs = new ArrayList<>(top + 1);
+        int[] labels = new int[n];
+        for (int i = 0; i <= top; i++) {
+            int count = 0;
+            for (int c = first[i]; c >= 0; c = next[c]) labels[count++] = c;
+            glyphs.add(GlyphView.of(page, minX[i], minY[i], maxX[i] - minX[i] + 1, maxY[i] - minY[i] + 1, components,
+                    Arrays.copyOf(labels, count)));
+        }
 
-        Point n = new Point(_x, _y);
-        Q.add(n);
-        character.add(n);
-        visited[_x][_y] = true;
-        while (!Q.isEmpty()) {
-            Point next = Q.pop();
-            int x = next.x;
-            int y = next.y;
-            for (int i = 0; i != dx.length; i++) {
-                _expand(buffer, Q, character, visited, x + dx[i], y + dy[i]);
+        // Sort from left to right
+        Collections.sort(glyphs, new Comparator<GlyphView>() {
+            @Override
+            public int compare(GlyphView o1, GlyphView o2) {
+                return Integer.compare(2 * o1.getX() + o1.getWidth(), 2 * o2.getX() + o2.getWidth());
             }
-        }
+        });
+        return Collections.unmodifiableList(glyphs);
     }
 
-    private static void _expand(BufferedImage buffer, LinkedList<Point> Q, LinkedList<Point> character, boolean[][] visited, int x, int y) {
-        if ((x >= 0 && x < buffer.getWidth() && y >= 0 && y < buffer.getHeight()) // Within bounds
-                && !visited[x][y] // And hasn't been visited
-                && buffer.getRGB(x, y) != OFF) { // And is on
-            Point n = new Point(x, y);
-            Q.add(n);
-            character.add(n);
-            visited[x][y] = true;
+    /**
+     * Collapses components into glyph bounding boxes, which are left on a stack ordered by left edge.
+     *
+     * @param first If not null, receives the first component collapsed into each box, with the rest chained through
+     *              {@code next}; {@code last} holds the last one.
+     * @return The top of the stack.
+     */
+    private static int collapse(ConnectedComponents components, int threshold, int[] minX, int[] minY, int[] maxX,
+                                int[] maxY, int[] first, int[] last, int[] next) {
+        int n = components.getCount();
+        // Sweep from left to right: order components by their left edge
+        long[] order = new long[n];
+        for (int i = 0; i != n; i++) {
+            order[i] = (long) components.getLeft(i) << 32 | i;
+        }
+        Arrays.sort(order);
+
+        // Collapsed boxes so far, ordered by left edge. No two boxes on the stack can be collapsed: if an incoming
+        // box collapses with any of them, it also collapses with the topmost, so only the top ever needs checking
+        int top = -1;
+        for (long key : order) {
+            int i = (int) key;
+            int l = components.getLeft(i), t = components.getTop(i);
+            int r = components.getRight(i), b = components.getBottom(i);
+            int head = i, tail = i;
+            if (next != null) next[i] = -1;
+            while (top >= 0 && ((r < maxX[top] + threshold && l > minX[top] - threshold)
+                    || (maxX[top] < r + threshold && minX[top] > l - threshold))) {
+                // Collapse the bounding boxes; the union may now reach the box beneath
+                l = min(l, minX[top]);
+                t = min(t, minY[top]);
+                r = max(r, maxX[top]);
+                b = max(b, maxY[top]);
+                if (next != null) {
+                    next[last[top]] = head;
+                    head = first[top];
+                }
+                top--;
+            }
+            top++;
+            minX[top] = l;
+            minY[top] = t;
+            maxX[top] = r;
+            maxY[top] = b;
+            if (next != null) {
+                first[top] = head;
+                last[top] = tail;
+            }
         }
+        return top;
     }
 }
@@ -0,0 +1,197 @@
+package tk.ivybits.neural.ocr;
+
+import tk.ivybits.neural.network.kohonen.BufferWeightMatrix;
+import tk.ivybits.neural.network.kohonen.ByteWeightMatrix;
+import tk.ivybits.neural.network.kohonen.KohonenModel;
+import tk.ivybits.neural.network.kohonen.WeightMatrix;
+import tk.ivybits.neural.network.kohonen.WeightPrecision;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Reads and writes trained {@link GlyphRecognizer} models.
+ * <p/>
+ * A model file is little-endian and laid out as follows:
+ * <pre>
+ * offset  size     field
+ * 0       4        magic, "OCRM"
+ * 4       4        format version
+ * 8       4        glyph width
+ * 12      4        glyph height
+ * 16      1        thinning flag
+ * 17      1        bytes per weight, 8, 4 or 1
+ * 18      1        coverage flag
+ * 19      1        reserved
+ * 20      4        input neuron count (in)
+ * 24      4        output neuron count (out)
+ * 28      4        reserved
+ * 32      2 * out  character of each output neuron, U+FFFF if none
+ * ...              padding to a multiple of 8 bytes
+ * ...     4 * out  float32 scale of each row, for 1 byte weights only
+ * ...     8 * out * (in + 1), 4 * out * (in + 1) or out * (in + 1)
+ *                  weight matrix, row-major, float64, float32 or int8
+ * </pre>
+ * Loading maps the file into memory and reads the weights straight from the mapping, so a process is ready to
+ * recognize as soon as the header is parsed, and every process loading the same file shares its pages.
+ */
+public class GlyphModelFile {
+    public static final int MAGIC = 'O' | 'C' << 8 | 'R' << 16 | 'M' << 24;
+    public static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final char NO_GLYPH = '\uFFFF';
+
+    /**
+     * Saves the model a recognizer was trained to.
+     *
+     * @param recognizer The trained recognizer.
+     * @param file       The file to write.
+     * @param precision  The precision to store weights with.
+     * @throws IOException If the file could not be written.
+     */
+    public static void save(GlyphRecognizer recognizer, File file, WeightPrecision precision) throws IOException {
+        KohonenModel<Character> model = recognizer.getTrainedModel();
+        WeightMatrix weights = model.getWeights();
+        int in = model.getInputNeuronCount();
+        int out = model.getOutputNeuronCount();
+        int weightsOffset = weightsOffset(out);
+
+        ByteBuffer header = ByteBuffer.allocate(weightsOffset).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(recognizer.getWidth())
+                .putInt(recognizer.getHeight())
+                .put((byte) (recognizer.isDoThin() ? 1 : 0))
+                .put((byte) precision.getBytes())
+                .put((byte) (recognizer.isCoverage() ? 1 : 0))
+                .put((byte) 0)
+                .putInt(in)
+                .putInt(out)
+                .putInt(0);
+        for (int n = 0; n != out; n++) {
+            Character glyph = model.getLabel(n);
+            header.putChar(glyph != null ? glyph : NO_GLYPH);
+        }
+        header.clear();
+
+        ByteWeightMatrix quantized = null;
+        if (precision == WeightPrecision.INT8)
+            quantized = weights instanceof ByteWeightMatrix ? (ByteWeightMatrix) weights : new ByteWeightMatrix(weights);
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), CREATE, WRITE, TRUNCATE_EXISTING)) {
+            write(channel, header);
+            ByteBuffer chunk = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            if (quantized != null) {
+                ByteBuffer scales = ByteBuffer.allocate(4 * out).order(ByteOrder.LITTLE_ENDIAN);
+                for (int row = 0; row != out; row++) {
+                    scales.putFloat(quantized.getScale(row));
+                }
+                scales.flip();
+                write(channel, scales);
+            }
+            for (int row = 0; row != out; row++) {
+                for (int column = 0; column <= in; column++) {
+                    if (chunk.remaining() < precision.getBytes()) {
+                        chunk.flip();
+                        write(channel, chunk);
+                        chunk.clear();
+                    }
+                    if (precision == WeightPrecision.FLOAT64)
+                        chunk.putDouble(weights.get(row, column));
+                    else if (precision == WeightPrecision.FLOAT32)
+                        chunk.putFloat((float) weights.get(row, column));
+                    else
+                        chunk.put(quantized.getQuantized(row, column));
+                }
+            }
+            chunk.flip();
+            write(channel, chunk);
+        }
+    }
+
+    /**
+     * Loads a model into a new recognizer, mapping the model's weights from the file.
+     *
+     * @param file The file to read.
+     * @return A recognizer ready to recognize glyphs.
+     * @throws IOException If the file could not be read or is not a model file.
+     */
+    public static GlyphRecognizer load(File file) throws IOException {
+        MappedByteBuffer map;
+        try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+            // The mapping stays valid once the channel is closed
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        map.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (map.remaining() < HEADER_SIZE || map.getInt(0) != MAGIC)
+            throw new IOException(file + " is not a model file");
+        int version = map.getInt(4);
+        if (version != VERSION)
+            throw new IOException(file + " has unsupported format version " + version);
+        int width = map.getInt(8);
+        int height = map.getInt(12);
+        boolean doThin = map.get(16) != 0;
+        int bytes = map.get(17);
+        boolean coverage = map.get(18) != 0;
+        int in = map.getInt(20);
+        int out = map.getInt(24);
+        if (in != width * height || out < 0)
+            throw new IOException(file + " has inconsistent dimensions");
+
+        int weightsOffset = weightsOffset(out);
+        int scalesSize = bytes == WeightPrecision.INT8.getBytes() ? 4 * out : 0;
+        long size = weightsOffset + scalesSize + (long) bytes * out * (in + 1);
+        if (map.capacity() < size)
+            throw new IOException(file + " is truncated");
+
+        Character[] neuronMap = new Character[out];
+        Set<Character> glyphs = new LinkedHashSet<>();
+        for (int n = 0; n != out; n++) {
+            char glyph = map.getChar(HEADER_SIZE + 2 * n);
+            if (glyph != NO_GLYPH) {
+                neuronMap[n] = glyph;
+                glyphs.add(glyph);
+            }
+        }
+
+        map.position(weightsOffset);
+        WeightMatrix weights;
+        if (bytes == WeightPrecision.FLOAT64.getBytes())
+            weights = BufferWeightMatrix.of(out, in + 1, map.asDoubleBuffer());
+        else if (bytes == WeightPrecision.FLOAT32.getBytes())
+            weights = BufferWeightMatrix.of(out, in + 1, map.asFloatBuffer());
+        else if (bytes == WeightPrecision.INT8.getBytes()) {
+            FloatBuffer scales = map.asFloatBuffer();
+            map.position(weightsOffset + scalesSize);
+            weights = BufferWeightMatrix.of(out, in + 1, map, scales);
+        } else {
+            throw new IOException(file + " has unsupported weight size " + bytes);
+        }
+
+        char[] chars = new char[glyphs.size()];
+        int i = 0;
+        for (char glyph : glyphs) chars[i++] = glyph;
+        GlyphRecognizer recognizer = new GlyphRecognizer(width, height, doThin, chars);
+        recognizer.setCoverage(coverage);
+        recognizer.publish(new KohonenModel<>(weights, neuronMap));
+        return recognizer;
+    }
+
+    private static int weightsOffset(int out) {
+        return (HEADER_SIZE + 2 * out + 7) & ~7;
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+}
@@ -2,15 +2,38 @@ package tk.ivybits.neural.ocr;
 
 import lombok.Getter;
 import lombok.Setter;
+import tk.ivybits.neural.network.kohonen.HammingIndex;
+import tk.ivybits.neural.network.kohonen.HyperplaneIndex;
+import tk.ivybits.neural.network.kohonen.KohonenModel;
 import tk.ivybits.neural.network.kohonen.KohonenNetwork;
+import tk.ivybits.neural.network.kohonen.LabelIndex;
+import tk.ivybits.neural.network.kohonen.Match;
+import tk.ivybits.neural.network.kohonen.TrainingSchedule;
+import tk.ivybits.neural.network.kohonen.WeightPrecision;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import static tk.ivybits.neural.ocr.GlyphGenerator.getGlyphImage;
 
+/**
+ * Recognizes single glyphs with a Kohonen network.
+ * <p/>
+ * Recognition reads only an immutable {@link KohonenModel} snapshot published at the end of training and never
+ * modifies the images it is given, so one recognizer may serve any number of threads, including while it is being
+ * retrained.
+ */
 public class GlyphRecognizer {
+    /**
+     * Reported for glyphs whose winning neuron does not stand for any character.
+     */
+    public static final char UNKNOWN = '\uFFFD';
+
     @Getter
     protected final int width;
     @Getter
@@ -19,9 +42,81 @@ public class GlyphRecognizer {
     protected final char[] glyphs;
     @Getter
     protected KohonenNetwork<Character> net;
+    /**
+     * The snapshot of {@link #net} which recognition runs against.
+     */
+    @Getter
+    protected volatile KohonenModel<Character> model;
+    @Getter
+    @Setter
+    protected volatile boolean doThin;
+    /**
+     * Whether glyphs are downsampled to the fraction of each cell covered by ink rather than to whether any ink falls
+     * in it. A recognizer must be retrained after this changes.
+     *
+     * @see Downsampler
+     */
+    @Getter
+    @Setter
+    protected volatile boolean coverage;
+    /**
+     * The pool training is sharded across, or null to train on the calling thread.
+     *
+     * @see KohonenNetwork#setPool(ForkJoinPool)
+     */
+    @Getter
+    @Setter
+    protected volatile ForkJoinPool trainingPool;
+    /**
+     * How the network is trained.
+     */
     @Getter
     @Setter
-    protected boolean doThin;
+    protected volatile TrainingSchedule trainingSchedule = new TrainingSchedule();
+    /**
+     * How far {@link #learn(char, BufferedImage)} moves the neuron of a known glyph towards a new sample, from 0..1.
+     */
+    @Getter
+    @Setter
+    protected volatile double updateRate = 0.5;
+    /**
+     * The number of glyphs whose prototypes are searched exactly for each glyph recognized, or 0 to search all
+     * prototypes.
+     *
+     * @see LabelIndex
+     */
+    @Getter
+    protected volatile int labelProbes;
+    /**
+     * The precision the weights recognition runs against are held with. Training always runs at full precision.
+     */
+    @Getter
+    @Setter
+    protected volatile WeightPrecision weightPrecision = WeightPrecision.FLOAT64;
+    /**
+     * The number of prototypes whose signs best agree with each glyph which are then scored exactly, or 0 to score
+     * prototypes without prefiltering them. Takes precedence over {@link #hyperplaneTables} and {@link #labelProbes}.
+     *
+     * @see HammingIndex
+     */
+    @Getter
+    protected volatile int hammingRerank;
+    /**
+     * The number of hash tables of 12 random hyperplanes each which nominate the prototypes scored for each glyph, or 0
+     * to score prototypes without hashing them. Takes precedence over {@link #labelProbes}. Suits recognizers with
+     * many thousands of prototypes.
+     *
+     * @see HyperplaneIndex
+     */
+    @Getter
+    protected volatile int hyperplaneTables;
+
+    private final ThreadLocal<Downsampler> downsamplers = new ThreadLocal<Downsampler>() {
+        @Override
+        protected Downsampler initialValue() {
+            return new Downsampler(width, height);
+        }
+    };
 
     public GlyphRecognizer(int width, int height, boolean doThin, char[] glyphs) {
         this.width = width;
@@ -38,58 +133,258 @@ public class GlyphRecognizer {
         this(width, height, true);
     }
 
+    /**
+     * Trains on every glyph rendered in every one of the given fonts, one sample per glyph per font.
+     */
     public void train(Font... fonts) {
-        HashMap<Character, BufferedImage> chars = new HashMap<>();
-
-        for (Font font : fonts) {
-            for (char glyph : glyphs) {
-                chars.put(glyph, getGlyphImage(font, glyph));
+        LinkedHashMap<Character, List<BufferedImage>> chars = new LinkedHashMap<>();
+        for (char glyph : glyphs) {
+            List<BufferedImage> samples = new ArrayList<>(fonts.length);
+            for (Font font : fonts) {
+                samples.add(getGlyphImage(font, glyph));
             }
+            chars.put(glyph, samples);
         }
 
         train(chars);
     }
 
     public void train(HashMap<Character, BufferedImage> chars) {
+        LinkedHashMap<Character, List<BufferedImage>> samples = new LinkedHashMap<>();
+        for (Map.Entry<Character, BufferedImage> pair : chars.entrySet()) {
+            samples.put(pair.getKey(), Collections.singletonList(pair.getValue()));
+        }
+        train(samples);
+    }
+
+    /**
+     * Trains on any number of samples per glyph. The network is given one output neuron per sample, and each neuron
+     * stands for the glyph most of the samples it wins belong to, so a glyph may end up with several prototypes.
+     *
+     * @param chars The samples of each glyph.
+     */
+    public synchronized void train(Map<Character, ? extends Collection<BufferedImage>> chars) {
         int inputNeuron = width * height;
-        int outputNeuron = chars.size();
+        int outputNeuron = 0;
+        for (Collection<BufferedImage> samples : chars.values()) {
+            outputNeuron += samples.size();
+        }
 
-        net = new KohonenNetwork<>(inputNeuron, outputNeuron);
-        for (Map.Entry<Character, BufferedImage> pair : chars.entrySet()) {
-            int idx = 0;
-            double[][] ds = getSampleFor(pair.getValue());
-            double[] set = new double[inputNeuron];
-            for (int y = 0; y < ds[0].length; y++) {
-                for (double[] d : ds) {
-                    set[idx++] = d[y];
-                }
+        KohonenNetwork<Character> net = new KohonenNetwork<>(inputNeuron, outputNeuron);
+        net.setPool(trainingPool);
+        for (Map.Entry<Character, ? extends Collection<BufferedImage>> pair : chars.entrySet()) {
+            for (BufferedImage sample : pair.getValue()) {
+                net.queueData(pair.getKey(), getInputFor(BinaryImage.of(sample), false));
             }
-            net.queueData(pair.getKey(), set);
         }
 
-        net.learn();
+        net.learn(trainingSchedule);
+        this.net = net;
+        publish(net.snapshot(weightPrecision));
+    }
+
+    /**
+     * Makes a model the one recognition runs against, indexed by sign if {@link #hammingRerank} is set, by hyperplane
+     * if {@link #hyperplaneTables} is, or by value if {@link #labelProbes} is.
+     */
+    protected void publish(KohonenModel<Character> model) {
+        int rerank = hammingRerank, tables = hyperplaneTables, probes = labelProbes;
+        if (rerank > 0)
+            this.model = model.withIndex(new HammingIndex(model, rerank));
+        else if (tables > 0)
+            // A fixed seed, so that a recognizer always nominates the same prototypes for the same model
+            this.model = model.withIndex(new HyperplaneIndex(model, tables, 12, 2, 1, 0));
+        else
+            this.model = model.withIndex(probes > 0 ? new LabelIndex(model, probes) : null);
+    }
+
+    /**
+     * Sets {@link #labelProbes}, reindexing the current model.
+     */
+    public synchronized void setLabelProbes(int labelProbes) {
+        if (labelProbes < 0)
+            throw new IllegalArgumentException("probes must not be negative");
+        this.labelProbes = labelProbes;
+        if (model != null) publish(model);
+    }
+
+    /**
+     * Sets {@link #hammingRerank}, reindexing the current model.
+     */
+    public synchronized void setHammingRerank(int hammingRerank) {
+        if (hammingRerank < 0)
+            throw new IllegalArgumentException("rerank must not be negative");
+        this.hammingRerank = hammingRerank;
+        if (model != null) publish(model);
+    }
+
+    /**
+     * Sets {@link #hyperplaneTables}, reindexing the current model.
+     */
+    public synchronized void setHyperplaneTables(int hyperplaneTables) {
+        if (hyperplaneTables < 0)
+            throw new IllegalArgumentException("tables must not be negative");
+        this.hyperplaneTables = hyperplaneTables;
+        if (model != null) publish(model);
+    }
+
+    /**
+     * Adds or corrects the sample of a single glyph without retraining.
+     * <p/>
+     * Only the neuron standing for the glyph changes, or a neuron is added if there is none; recognition carries on
+     * against the previous model until the updated one is published. A recognizer loaded from a model file is updated
+     * on top of the loaded model; an untrained recognizer is trained on the sample alone.
+     *
+     * @param glyph The character the sample stands for.
+     * @param img   The sample.
+     * @see KohonenNetwork#update(Object, double[], double)
+     */
+    public void learn(char glyph, BufferedImage img) {
+        learn(glyph, new GlyphView(BinaryImage.of(img)), false);
+    }
+
+    /**
+     * Adds or corrects the sample of a single glyph without retraining.
+     *
+     * @param glyph   The character the sample stands for.
+     * @param sample  The sample, read in place.
+     * @param thinned Whether the sample has already been thinned.
+     * @see #learn(char, BufferedImage)
+     */
+    public synchronized void learn(char glyph, GlyphView sample, boolean thinned) {
+        double[] input = getInputFor(sample, thinned);
+        if (net == null && model != null)
+            net = new KohonenNetwork<>(model);
+        if (net == null) {
+            KohonenNetwork<Character> net = new KohonenNetwork<>(width * height, 1);
+            net.setPool(trainingPool);
+            net.queueData(glyph, input);
+            net.learn(trainingSchedule);
+            this.net = net;
+        } else {
+            net.update(glyph, input, updateRate);
+        }
+        publish(net.snapshot(weightPrecision));
+    }
+
+    /**
+     * Saves the model this recognizer was trained to.
+     *
+     * @see GlyphModelFile
+     */
+    public void save(File file, WeightPrecision precision) throws IOException {
+        GlyphModelFile.save(this, file, precision);
+    }
+
+    /**
+     * Loads a recognizer from a model file, without retraining.
+     *
+     * @see GlyphModelFile
+     */
+    public static GlyphRecognizer load(File file) throws IOException {
+        return GlyphModelFile.load(file);
     }
 
     public char recognize(BufferedImage img) {
-        return net.recall(getInputFor(getSampleFor(img)));
+        return recognize(BinaryImage.of(img));
     }
 
-    protected double[][] getSampleFor(BufferedImage img) {
-        if (doThin)
-            ZhangSuen.perform(img);
-        double[][] sample = new double[width][height];
-        Downsample.downSample(img, sample);
-        return sample;
+    public char recognize(BinaryImage img) {
+        return recognize(new GlyphView(img));
     }
 
-    protected double[] getInputFor(double[][] ds) {
-        double input[] = new double[ds.length * ds[0].length];
-        int idx = 0;
-        for (int y = 0; y < ds[0].length; y++) {
-            for (double[] d : ds) {
-                input[idx++] = d[y];
-            }
+    public char recognize(GlyphView glyph) {
+        return toChar(recall(getTrainedModel(), glyph, false));
+    }
+
+    /**
+     * Recognizes a glyph as its best matching characters.
+     *
+     * @param img The glyph.
+     * @param k   The number of characters to return.
+     * @return Up to {@code k} distinct characters, best first, with their confidences.
+     */
+    public List<Match<Character>> recognize(BinaryImage img, int k) {
+        return getTrainedModel().recall(getInputFor(img, false), k);
+    }
+
+    /**
+     * Recognizes a batch of glyphs, such as all the glyphs of a page, in a single pass over the network.
+     *
+     * @param imgs The glyphs to recognize.
+     * @return The recognized characters, in order.
+     */
+    public char[] recognize(List<BinaryImage> imgs) {
+        double[][] inputs = new double[imgs.size()][];
+        for (int i = 0; i != inputs.length; i++) {
+            inputs[i] = getInputFor(imgs.get(i), false);
+        }
+        List<Character> recalled = getTrainedModel().recall(inputs);
+        char[] chars = new char[recalled.size()];
+        for (int i = 0; i != chars.length; i++) {
+            chars[i] = toChar(recalled.get(i));
         }
+        return chars;
+    }
+
+    /**
+     * Converts a glyph to an input vector for the network.
+     *
+     * @param img     The glyph.
+     * @param thinned Whether the glyph has already been thinned. If not, it is thinned first if {@link #isDoThin()}.
+     * @return The input vector.
+     */
+    public double[] getInputFor(BinaryImage img, boolean thinned) {
+        return getInputFor(new GlyphView(img), thinned);
+    }
+
+    /**
+     * Converts a glyph to an input vector for the network, reading it in place.
+     *
+     * @param glyph   The glyph.
+     * @param thinned Whether the glyph has already been thinned. If not, it is thinned first if {@link #isDoThin()},
+     *                and the thinned glyph is kept on the view.
+     * @return The input vector.
+     * @see GlyphView#thin()
+     */
+    public double[] getInputFor(GlyphView glyph, boolean thinned) {
+        if (!thinned && doThin) glyph = glyph.thin();
+        double[] input = new double[width * height];
+        downsamplers.get().downSample(glyph, coverage, input);
         return input;
     }
-}
\ No newline at end of file
+
+    /**
+     * Recalls a glyph against a model. A {@link HammingIndex} is handed the signs of the cells as they are downsampled,
+     * rather than packing them again from the input vector.
+     *
+     * @see #getInputFor(GlyphView, boolean)
+     */
+    Character recall(KohonenModel<Character> model, GlyphView glyph, boolean thinned) {
+        if (!(model.getIndex() instanceof HammingIndex))
+            return model.recall(getInputFor(glyph, thinned));
+        if (!thinned && doThin) glyph = glyph.thin();
+        double[] input = new double[width * height];
+        long[] signs = new long[(width * height + 63) >>> 6];
+        downsamplers.get().downSample(glyph, coverage, input, signs);
+        return model.getLabel(model.winner(input, ((HammingIndex) model.getIndex()).candidates(signs), null));
+    }
+
+    /**
+     * @return The character recalled by the network, or {@link #UNKNOWN} if it recalled none.
+     */
+    public static char toChar(Character recalled) {
+        return recalled != null ? recalled : UNKNOWN;
+    }
+
+    /**
+     * @return The model recognition currently runs against.
+     * @throws IllegalStateException If the recognizer has not been trained yet.
+     */
+    public KohonenModel<Character> getTrainedModel() {
+        KohonenModel<Character> model = this.model;
+        if (model == null)
+            throw new IllegalStateException("recognizer has not been trained");
+        return model;
+    }
+}
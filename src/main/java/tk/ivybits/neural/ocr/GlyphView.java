@@ -0,0 +1,149 @@
+package tk.ivybits.neural.ocr;
+
+import lombok.Getter;
+
+import java.awt.geom.Rectangle2D;
+
+/**
+ * A glyph on a page, read in place from the page's bitmap.
+ * <p/>
+ * A view is a rectangle of a shared {@link BinaryImage}, optionally restricted to the pixels of the connected
+ * components the glyph was segmented from, so that strokes of neighbouring glyphs reaching into the rectangle are
+ * left out. Rows are read straight from the page's words at the view's offset and the page's stride, or from the runs
+ * of the components; nothing is copied, so a page is decoded once and the work done per glyph only touches that
+ * glyph's bits.
+ * <p/>
+ * The page must not change while views of it are in use.
+ */
+public class GlyphView {
+    @Getter
+    protected final BinaryImage page;
+    /**
+     * The position of the view's top left corner on the page.
+     */
+    @Getter
+    protected final int x, y;
+    @Getter
+    protected final int width, height;
+    // The labeling the view reads the pixels of its components from, or null to read every pixel of the rectangle
+    protected final ConnectedComponents components;
+    // The components the view reads
+    protected final int[] labels;
+    /**
+     * Whether the view reads a thinned glyph.
+     */
+    @Getter
+    protected final boolean thinned;
+    // The thinned glyph, once it has been thinned
+    private volatile GlyphView thinnedView;
+
+    /**
+     * Views a whole bitmap.
+     */
+    public GlyphView(BinaryImage page) {
+        this(page, 0, 0, page.getWidth(), page.getHeight());
+    }
+
+    /**
+     * Views a rectangle of a page. Pixels outside the page read as off.
+     */
+    public GlyphView(BinaryImage page, int x, int y, int width, int height) {
+        this(page, x, y, width, height, null, null, false);
+    }
+
+    protected GlyphView(BinaryImage page, int x, int y, int width, int height, ConnectedComponents components,
+                        int[] labels, boolean thinned) {
+        this.page = page;
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        this.components = components;
+        this.labels = labels;
+        this.thinned = thinned;
+    }
+
+    /**
+     * @param components The labeled components of the page.
+     * @param labels     The components the glyph is made of.
+     * @return A view of a rectangle of a page which only reads the pixels of the given components. If the rectangle
+     * holds no other components, the view reads the page's words directly.
+     */
+    public static GlyphView of(BinaryImage page, int x, int y, int width, int height, ConnectedComponents components,
+                               int... labels) {
+        if (components.holdsOnly(x, y, width, height, labels))
+            return new GlyphView(page, x, y, width, height);
+        return new GlyphView(page, x, y, width, height, components, labels.clone(), false);
+    }
+
+    /**
+     * Thins the glyph, once.
+     * <p/>
+     * The glyph is thinned on first use and the result is kept, so every later caller, on any thread, shares it. The
+     * page is not modified.
+     *
+     * @return A view of a bitmap of the glyph's size holding the thinned glyph, or this view if it is already
+     * thinned.
+     * @see ZhangSuen#thin(GlyphView)
+     */
+    public GlyphView thin() {
+        if (thinned) return this;
+        GlyphView thinnedView = this.thinnedView;
+        if (thinnedView == null) {
+            // Threads racing to thin the glyph thin it identically, so whichever result is kept does not matter
+            this.thinnedView = thinnedView = new GlyphView(ZhangSuen.thin(this), 0, 0, width, height, null, null, true);
+        }
+        return thinnedView;
+    }
+
+    /**
+     * @return Whether the view only reads the pixels of some components.
+     */
+    public boolean isMasked() {
+        return components != null;
+    }
+
+    /**
+     * @return Where on the page the view lies.
+     */
+    public Rectangle2D getBounds() {
+        return new Rectangle2D.Float(x, y, width, height);
+    }
+
+    public boolean get(int x, int y) {
+        return (wordAt(x, y) & 1) != 0;
+    }
+
+    /**
+     * Reads up to 64 consecutive pixels of a row of the view; pixels outside the view, or masked out, read as off.
+     *
+     * @return The pixels of row {@code y} starting at column {@code x}, leftmost in the least significant bit.
+     * @see BinaryImage#wordAt(int, int)
+     */
+    public long wordAt(int x, int y) {
+        if (y < 0 || y >= height || x >= width || x <= -64) return 0;
+        long word = components != null
+                ? components.wordAt(this.x + x, this.y + y, labels)
+                : page.wordAt(this.x + x, this.y + y);
+        if (x < 0) word &= -1L << -x;
+        if (width - x < 64) word &= -1L >>> (64 - (width - x));
+        return word;
+    }
+
+    /**
+     * Copies the pixels the view reads into a new bitmap.
+     *
+     * @return A new bitmap of the view's size.
+     */
+    public BinaryImage toBinaryImage() {
+        BinaryImage copy = new BinaryImage(width, height);
+        int stride = copy.getStride();
+        long[] bits = copy.getBits();
+        for (int _y = 0; _y != height; _y++) {
+            for (int i = 0; i != stride; i++) {
+                bits[_y * stride + i] = wordAt(i << 6, _y);
+            }
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,237 @@
+package tk.ivybits.neural.ocr;
+
+import lombok.Getter;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Recognizes a stream of pages with bounded memory.
+ * <p/>
+ * Decoding, binarizing and thinning, segmenting and classifying each run on their own thread, connected by bounded
+ * queues. A stage blocks while the queue after it is full, so only a fixed number of pages are ever in flight
+ * whatever the size of the batch, and sources are only pulled from the input as fast as results are consumed.
+ * Results come out in input order. A page which fails is reported in its result and does not stop the pages after
+ * it.
+ */
+public class PagePipeline {
+    @Getter
+    protected final PageRecognizer recognizer;
+    /**
+     * The capacity of each queue between two stages.
+     */
+    @Getter
+    protected final int queueCapacity;
+
+    public PagePipeline(PageRecognizer recognizer, int queueCapacity) {
+        if (queueCapacity < 1)
+            throw new IllegalArgumentException("queue capacity must be positive");
+        this.recognizer = recognizer;
+        this.queueCapacity = queueCapacity;
+    }
+
+    public PagePipeline(PageRecognizer recognizer) {
+        this(recognizer, 2);
+    }
+
+    /**
+     * Starts recognizing pages.
+     *
+     * @param sources The pages to recognize. The iterator is consumed on a pipeline thread.
+     * @return The results, available as soon as each page is done.
+     */
+    public Results process(final Iterator<? extends PageSource> sources) {
+        final BlockingQueue<Page> decoded = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Page> prepared = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Page> segmented = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Page> done = new ArrayBlockingQueue<>(queueCapacity);
+
+        List<Thread> stages = new ArrayList<>();
+        stages.add(new Thread("ocr-decode") {
+            @Override
+            public void run() {
+                boolean closed = false;
+                try {
+                    for (long index = 0; ; index++) {
+                        Page page;
+                        try {
+                            if (!sources.hasNext()) break;
+                            page = new Page(index, sources.next());
+                        } catch (RuntimeException | Error e) {
+                            // The input is broken; report it and end the stream
+                            Page failed = new Page(index, null);
+                            failed.error = e;
+                            decoded.put(failed);
+                            break;
+                        }
+                        try {
+                            page.image = page.source.read();
+                            if (page.image == null)
+                                throw new IllegalStateException("no image in " + page.source.getName());
+                        } catch (Exception | Error e) {
+                            page.image = null;
+                            page.error = e;
+                        }
+                        decoded.put(page);
+                    }
+                } catch (InterruptedException e) {
+                    closed = true;
+                } finally {
+                    // However decoding ended, the stages after this one must see the end of the stream
+                    if (!closed) {
+                        try {
+                            decoded.put(Page.END);
+                        } catch (InterruptedException e) {
+                            // Closed
+                        }
+                    }
+                }
+            }
+        });
+        stages.add(new Stage("ocr-prepare", decoded, prepared) {
+            @Override
+            void process(Page page) {
+                BinaryImage bitmap = recognizer.binarize(page.image);
+                page.image = null;
+                // Either thin the whole page here, or leave each glyph to be thinned as it is classified
+                page.thinned = recognizer.getRecognizer().isDoThin() && !recognizer.isThinGlyphs();
+                if (page.thinned)
+                    ZhangSuen.perform(bitmap);
+                page.bitmap = bitmap;
+            }
+        });
+        stages.add(new Stage("ocr-segment", prepared, segmented) {
+            @Override
+            void process(Page page) {
+                page.views = recognizer.segmentGlyphs(page.bitmap);
+            }
+        });
+        stages.add(new Stage("ocr-classify", segmented, done) {
+            @Override
+            void process(Page page) {
+                page.glyphs = recognizer.recognizeGlyphs(page.views, page.thinned);
+                page.bitmap = null;
+                page.views = null;
+            }
+        });
+
+        for (Thread stage : stages) {
+            stage.setDaemon(true);
+            stage.start();
+        }
+        return new Results(done, stages);
+    }
+
+    /**
+     * The results of a running pipeline, in input order. Closing the results stops the pipeline.
+     */
+    public static class Results implements Iterator<PageResult>, Closeable {
+        private final BlockingQueue<Page> done;
+        private final List<Thread> stages;
+        private Page next;
+        private boolean closed;
+
+        private Results(BlockingQueue<Page> done, List<Thread> stages) {
+            this.done = done;
+            this.stages = stages;
+        }
+
+        /**
+         * Waits for the next page to be done.
+         *
+         * @return False once every page has been returned or the pipeline has been closed.
+         */
+        @Override
+        public boolean hasNext() {
+            if (closed) return false;
+            if (next == null) {
+                try {
+                    next = done.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("interrupted while waiting for a page", e);
+                }
+            }
+            return next != Page.END;
+        }
+
+        @Override
+        public PageResult next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Page page = next;
+            next = null;
+            return new PageResult(page.index, page.source, page.glyphs, page.error);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            for (Thread stage : stages) {
+                stage.interrupt();
+            }
+        }
+    }
+
+    private static abstract class Stage extends Thread {
+        private final BlockingQueue<Page> in, out;
+
+        Stage(String name, BlockingQueue<Page> in, BlockingQueue<Page> out) {
+            super(name);
+            this.in = in;
+            this.out = out;
+        }
+
+        abstract void process(Page page);
+
+        @Override
+        public void run() {
+            try {
+                for (Page page = in.take(); page != Page.END; page = in.take()) {
+                    if (page.error == null) {
+                        try {
+                            process(page);
+                        } catch (RuntimeException | Error e) {
+                            page.error = e;
+                            page.image = null;
+                            page.bitmap = null;
+                            page.views = null;
+                        }
+                    }
+                    out.put(page);
+                }
+                out.put(Page.END);
+            } catch (InterruptedException e) {
+                // Closed
+            }
+        }
+    }
+
+    // A page on its way through the pipeline; each stage drops what the stages after it no longer need
+    private static class Page {
+        static final Page END = new Page(-1, null);
+
+        final long index;
+        final PageSource source;
+        BufferedImage image;
+        BinaryImage bitmap;
+        boolean thinned;
+        // Views of the glyphs on bitmap
+        List<GlyphView> views;
+        List<RecognizedGlyph> glyphs;
+        Throwable error;
+
+        Page(long index, PageSource source) {
+            this.index = index;
+            this.source = source;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package tk.ivybits.neural.ocr;
+
+import lombok.Getter;
+import lombok.Setter;
+import tk.ivybits.neural.network.kohonen.HammingIndex;
+import tk.ivybits.neural.network.kohonen.KohonenModel;
+
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Recognizes every glyph on a page.
+ * <p/>
+ * A page is binarized, thinned and segmented once, after which the per-glyph work of downsampling and classifying
+ * is split into batches and fanned out over an executor. Glyphs are read in place from the page through
+ * {@link GlyphView}s, so the page is never copied per glyph. When the executor is a {@link ForkJoinPool} the batches are
+ * forked recursively; any other executor is handed one task per batch.
+ */
+public class PageRecognizer {
+    private static final int DEFAULT_BATCH_SIZE = 16;
+    private static ForkJoinPool defaultPool;
+
+    @Getter
+    protected final GlyphRecognizer recognizer;
+    @Getter
+    protected final ExecutorService executor;
+    /**
+     * The threshold passed to {@link GlyphBounds#getBoundingBoxes(ConnectedComponents, int)}.
+     */
+    @Getter
+    protected final int threshold;
+    /**
+     * The number of glyphs classified together by a single task.
+     */
+    @Getter
+    protected final int batchSize;
+    /**
+     * Whether a page is segmented before it is thinned, with only the glyphs found then thinned, each once and in
+     * parallel, instead of thinning the whole page first. Most of a sparse page is margin, which is then never
+     * thinned. Glyphs are segmented from their unthinned strokes, so their bounding boxes may be slightly larger.
+     *
+     * @see GlyphView#thin()
+     */
+    @Getter
+    @Setter
+    protected volatile boolean thinGlyphs;
+    /**
+     * How pages are converted to bitmaps, or null to treat every pixel which is not pure white as ink.
+     */
+    @Getter
+    @Setter
+    protected volatile Binarizer binarizer;
+
+    public PageRecognizer(GlyphRecognizer recognizer, ExecutorService executor, int threshold, int batchSize) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("batch size must be positive");
+        this.recognizer = recognizer;
+        this.executor = executor;
+        this.threshold = threshold;
+        this.batchSize = batchSize;
+    }
+
+    public PageRecognizer(GlyphRecognizer recognizer, ExecutorService executor) {
+        this(recognizer, executor, 5, DEFAULT_BATCH_SIZE);
+    }
+
+    public PageRecognizer(GlyphRecognizer recognizer) {
+        this(recognizer, getDefaultPool());
+    }
+
+    /**
+     * @return A fork-join pool with one worker per processor, shared by all recognizers created without an executor.
+     */
+    public static synchronized ForkJoinPool getDefaultPool() {
+        if (defaultPool == null)
+            defaultPool = new ForkJoinPool();
+        return defaultPool;
+    }
+
+    public List<RecognizedGlyph> recognizePage(BufferedImage page) {
+        return recognizePage(binarize(page));
+    }
+
+    /**
+     * Converts a page to a bitmap with {@link #binarizer}.
+     *
+     * @return A new bitmap of the same dimensions.
+     */
+    public BinaryImage binarize(BufferedImage page) {
+        Binarizer binarizer = this.binarizer;
+        return binarizer != null ? binarizer.binarize(page) : BinaryImage.of(page);
+    }
+
+    /**
+     * Recognizes the glyphs on a page.
+     *
+     * @param page The page. It is not modified.
+     * @return The recognized glyphs, from left to right.
+     */
+    public List<RecognizedGlyph> recognizePage(BinaryImage page) {
+        boolean thin = recognizer.isDoThin() && !thinGlyphs;
+        if (thin) {
+            page = page.copy();
+            ZhangSuen.perform(page);
+        }
+        // With thinGlyphs, each glyph is thinned by the task which classifies it
+        return recognizeGlyphs(segmentGlyphs(page), thin);
+    }
+
+    /**
+     * Finds the glyphs on a page.
+     *
+     * @param page The page, thinned if the recognizer thins glyphs.
+     * @return The bounding boxes of the glyphs, from left to right.
+     */
+    public List<Rectangle2D> segment(BinaryImage page) {
+        return GlyphBounds.getBoundingBoxes(label(page), threshold);
+    }
+
+    /**
+     * Finds the glyphs on a page.
+     *
+     * @param page The page, thinned if the recognizer thins glyphs and {@link #isThinGlyphs()} is not set.
+     * @return Views of the glyphs, masked down to their own components, from left to right.
+     * @see GlyphBounds#getGlyphs(BinaryImage, ConnectedComponents, int)
+     */
+    public List<GlyphView> segmentGlyphs(BinaryImage page) {
+        return GlyphBounds.getGlyphs(page, label(page), threshold);
+    }
+
+    /**
+     * Labels the components of a page, a band of rows at a time on the executor if it is a {@link ForkJoinPool}.
+     *
+     * @see ConnectedComponents#label(BinaryImage, ForkJoinPool)
+     */
+    protected ConnectedComponents label(BinaryImage page) {
+        return ConnectedComponents.label(page, executor instanceof ForkJoinPool ? (ForkJoinPool) executor : null);
+    }
+
+    /**
+     * Recognizes already segmented glyphs.
+     *
+     * @param page    The page the glyphs are on. It is not modified.
+     * @param bounds  The bounding boxes of the glyphs.
+     * @param thinned Whether the page has already been thinned.
+     * @return The recognized glyphs, in the order of {@code bounds}.
+     */
+    public List<RecognizedGlyph> recognizeGlyphs(BinaryImage page, List<Rectangle2D> bounds, boolean thinned) {
+        List<GlyphView> views = new ArrayList<>(bounds.size());
+        for (Rectangle2D bound : bounds) {
+            views.add(new GlyphView(page, (int) bound.getX(), (int) bound.getY(),
+                    (int) bound.getWidth(), (int) bound.getHeight()));
+        }
+        return recognizeGlyphs(views, thinned);
+    }
+
+    /**
+     * Recognizes already segmented glyphs.
+     *
+     * @param views   The glyphs. The pages they are on are not modified.
+     * @param thinned Whether the pages have already been thinned. If not, glyphs are thinned as they are classified
+     *                if the recognizer thins glyphs, and kept on their views.
+     * @return The recognized glyphs, in the order of {@code views}.
+     */
+    public List<RecognizedGlyph> recognizeGlyphs(List<GlyphView> views, boolean thinned) {
+        char[] glyphs = new char[views.size()];
+        // Pin the model so that every glyph of the page is classified by the same one
+        KohonenModel<Character> model = recognizer.getTrainedModel();
+
+        if (executor instanceof ForkJoinPool) {
+            ((ForkJoinPool) executor).invoke(new RecognizeTask(views, model, thinned, glyphs, 0, glyphs.length));
+        } else {
+            List<Future<?>> batches = new ArrayList<>();
+            for (int from = 0; from < glyphs.length; from += batchSize) {
+                final RecognizeTask task = new RecognizeTask(views, model, thinned, glyphs, from,
+                        Math.min(from + batchSize, glyphs.length));
+                batches.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        task.recognize();
+                    }
+                }));
+            }
+            for (Future<?> batch : batches) {
+                try {
+                    batch.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("interrupted while recognizing page", e);
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("failed to recognize page", e.getCause());
+                }
+            }
+        }
+
+        List<RecognizedGlyph> recognized = new ArrayList<>(glyphs.length);
+        for (int i = 0; i != glyphs.length; i++) {
+            recognized.add(new RecognizedGlyph(glyphs[i], views.get(i).getBounds()));
+        }
+        return recognized;
+    }
+
+    /**
+     * Recognizes the glyphs on a page as a string.
+     *
+     * @param page The page. It is not modified.
+     * @return The recognized glyphs, from left to right.
+     */
+    public String recognizeText(BufferedImage page) {
+        StringBuilder text = new StringBuilder();
+        for (RecognizedGlyph glyph : recognizePage(page)) {
+            text.append(glyph.getGlyph());
+        }
+        return text.toString();
+    }
+
+    private class RecognizeTask extends RecursiveAction {
+        private final List<GlyphView> views;
+        private final KohonenModel<Character> model;
+        private final boolean thinned;
+        private final char[] glyphs;
+        private final int from, to;
+
+        RecognizeTask(List<GlyphView> views, KohonenModel<Character> model, boolean thinned, char[] glyphs,
+                      int from, int to) {
+            this.views = views;
+            this.model = model;
+            this.thinned = thinned;
+            this.glyphs = glyphs;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= batchSize) {
+                recognize();
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RecognizeTask(views, model, thinned, glyphs, from, mid),
+                    new RecognizeTask(views, model, thinned, glyphs, mid, to));
+        }
+
+        void recognize() {
+            if (model.getIndex() instanceof HammingIndex) {
+                // Indexed models score glyphs one at a time anyway, so let each pack its signs as it is downsampled
+                for (int i = from; i != to; i++) {
+                    glyphs[i] = GlyphRecognizer.toChar(recognizer.recall(model, views.get(i), thinned));
+                }
+                return;
+            }
+            double[][] inputs = new double[to - from][];
+            for (int i = from; i != to; i++) {
+                inputs[i - from] = recognizer.getInputFor(views.get(i), thinned);
+            }
+            List<Character> recalled = model.recall(inputs);
+            for (int i = from; i != to; i++) {
+                glyphs[i] = GlyphRecognizer.toChar(recalled.get(i - from));
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package tk.ivybits.neural.ocr;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * The outcome of recognizing one page in a {@link PagePipeline}.
+ */
+@Data
+public class PageResult {
+    /**
+     * The position of the page in the pipeline's input, counting from 0.
+     */
+    private final long index;
+    private final PageSource source;
+    /**
+     * The recognized glyphs from left to right, or null if the page failed.
+     */
+    private final List<RecognizedGlyph> glyphs;
+    /**
+     * Why the page failed, or null if it succeeded.
+     */
+    private final Throwable error;
+
+    public boolean isSuccessful() {
+        return error == null;
+    }
+
+    /**
+     * @return The recognized glyphs as a string.
+     * @throws IllegalStateException If the page failed.
+     */
+    public String getText() {
+        if (error != null)
+            throw new IllegalStateException("page " + (source != null ? source.getName() : index) + " failed", error);
+        StringBuilder text = new StringBuilder(glyphs.size());
+        for (RecognizedGlyph glyph : glyphs) {
+            text.append(glyph.getGlyph());
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,24 @@
+package tk.ivybits.neural.ocr;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * A page which can be decoded on demand.
+ *
+ * @see PageSources
+ */
+public interface PageSource {
+    /**
+     * @return A name for the page, such as a file name and page number.
+     */
+    String getName();
+
+    /**
+     * Decodes the page.
+     *
+     * @return The page image.
+     * @throws IOException If the page could not be read.
+     */
+    BufferedImage read() throws IOException;
+}
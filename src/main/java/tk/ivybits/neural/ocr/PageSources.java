@@ -0,0 +1,122 @@
+package tk.ivybits.neural.ocr;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Factories for {@link PageSource}s.
+ */
+public class PageSources {
+    /**
+     * @return A source for an image which has already been decoded.
+     */
+    public static PageSource of(final String name, final BufferedImage image) {
+        return new PageSource() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public BufferedImage read() {
+                return image;
+            }
+        };
+    }
+
+    /**
+     * @return A source for one image of a possibly multi-page image file, read with {@link ImageIO}.
+     */
+    public static PageSource of(final File file, final int page) {
+        return new PageSource() {
+            @Override
+            public String getName() {
+                return file.getName() + "#" + page;
+            }
+
+            @Override
+            public BufferedImage read() throws IOException {
+                try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+                    ImageReader reader = readerFor(file, in);
+                    try {
+                        reader.setInput(in, true, true);
+                        return reader.read(page);
+                    } finally {
+                        reader.dispose();
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Lists the pages of image files lazily: a file is only opened, to count its pages, once the pages of every
+     * file before it have been consumed.
+     *
+     * @param files The image files.
+     * @return A source for every page of every file, in order.
+     */
+    public static Iterator<PageSource> fromFiles(final Iterator<File> files) {
+        return new Iterator<PageSource>() {
+            private File file;
+            private int page, pages;
+
+            @Override
+            public boolean hasNext() {
+                while (page == pages) {
+                    if (!files.hasNext()) return false;
+                    file = files.next();
+                    page = 0;
+                    try {
+                        pages = countPages(file);
+                    } catch (IOException e) {
+                        // Hand out a single page whose read reports the error
+                        pages = 1;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public PageSource next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return of(file, page++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    public static Iterator<PageSource> fromFiles(Iterable<File> files) {
+        return fromFiles(files.iterator());
+    }
+
+    private static int countPages(File file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            ImageReader reader = readerFor(file, in);
+            try {
+                reader.setInput(in, false, true);
+                return reader.getNumImages(true);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static ImageReader readerFor(File file, ImageInputStream in) throws IOException {
+        if (in == null)
+            throw new IOException("could not open " + file);
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+        if (!readers.hasNext())
+            throw new IOException("no image reader for " + file);
+        return readers.next();
+    }
+}
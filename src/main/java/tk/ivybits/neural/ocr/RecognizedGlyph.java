@@ -0,0 +1,20 @@
+package tk.ivybits.neural.ocr;
+
+import lombok.Data;
+
+import java.awt.geom.Rectangle2D;
+
+/**
+ * A glyph recognized on a page.
+ */
+@Data
+public class RecognizedGlyph {
+    /**
+     * The recognized character.
+     */
+    private final char glyph;
+    /**
+     * Where on the page the glyph was found.
+     */
+    private final Rectangle2D bounds;
+}
@@ -7,80 +7,194 @@ import java.util.*;
 public class ZhangSuen {
     public static final int ON = Color.BLACK.getRGB(), OFF = Color.WHITE.getRGB();
 
+    /**
+     * Thins an image in place. Pixels removed by thinning are set to {@link #OFF}.
+     *
+     * @param buffer The image to thin.
+     */
     public static void perform(BufferedImage buffer) {
-        LinkedList<Point> P = new LinkedList<>();
-        boolean hasChanged;
-        do {
-            hasChanged = false;
-            for (int x = 1; x + 1 < buffer.getWidth(); x++) {
-                for (int y = 1; y + 1 < buffer.getHeight(); y++) {
-                    int a = A(buffer, x, y);
-                    int b = B(buffer, x, y);
-                    if (buffer.getRGB(x, y) == 1 && 2 <= b && b <= 6 && a == 1
-                            && (!(buffer.getRGB(x - 1, y) == ON && buffer.getRGB(x, y + 1) == ON && buffer.getRGB(x + 1, y) == ON))
-                            && (!(buffer.getRGB(x, y + 1) == ON && buffer.getRGB(x + 1, y) == ON && buffer.getRGB(x, y - 1) == ON))) {
-                        P.add(new Point(x, y));
-                        hasChanged = true;
-                    }
-                }
+        BinaryImage before = BinaryImage.of(buffer);
+        BinaryImage after = before.copy();
+        perform(after);
+
+        int stride = before.getStride();
+        long[] old = before.getBits();
+        long[] thinned = after.getBits();
+        for (int i = 0; i != old.length; i++) {
+            // Only clear the pixels thinning removed
+            for (long removed = old[i] & ~thinned[i]; removed != 0; removed &= removed - 1) {
+                int x = ((i % stride) << 6) + Long.numberOfTrailingZeros(removed);
+                buffer.setRGB(x, i / stride, OFF);
             }
+        }
+    }
+
+    // Lookup tables over the 8-neighbourhood of a pixel. Bit i of a code is set if neighbour P(i + 2) is on, with
+    // P2..P9 running clockwise from the pixel directly above.
+    private static final boolean[] FIRST_PASS = new boolean[256], SECOND_PASS = new boolean[256];
+
+    static {
+        for (int code = 0; code != 256; code++) {
+            // Number of on neighbours
+            int b = Integer.bitCount(code);
+            // Number of off to on transitions in the sequence P2, P3, ..., P9, P2
+            int a = 0;
+            for (int i = 0; i != 8; i++) {
+                if ((code >>> i & 1) == 0 && (code >>> ((i + 1) & 7) & 1) == 1) a++;
+            }
+            boolean p2 = (code & 1) != 0, p4 = (code & 4) != 0, p6 = (code & 16) != 0, p8 = (code & 64) != 0;
+            boolean removable = 2 <= b && b <= 6 && a == 1;
+            FIRST_PASS[code] = removable && !(p2 && p4 && p6) && !(p4 && p6 && p8);
+            SECOND_PASS[code] = removable && !(p2 && p4 && p8) && !(p2 && p6 && p8);
+        }
+    }
+
+    /**
+     * Thins a bitmap in place.
+     * <p/>
+     * Each sub-iteration works on 64 pixels at a time: the shifted neighbour words of a row segment are built once,
+     * pixels whose four direct neighbours are all on are discarded with bitwise operations, and the remaining border
+     * pixels are classified through a lookup table. Only words whose neighbourhood changed during the previous two
+     * sub-iterations are revisited.
+     *
+     * @param buffer The bitmap to thin.
+     */
+    public static void perform(BinaryImage buffer) {
+        int w = buffer.getWidth();
+        int h = buffer.getHeight();
+        if (w < 3 || h < 3) return;
+        int stride = buffer.getStride();
+        long[] bits = buffer.getBits();
 
-            for (Point point : P) {
-                buffer.setRGB(point.x, point.y, OFF);
+        // The outermost rows and columns are never thinned
+        long[] interior = new long[stride];
+        for (int c = 0; c != stride; c++) {
+            interior[c] = -1L;
+        }
+        interior[0] &= ~1L;
+        interior[(w - 1) >>> 6] &= ~(1L << (w - 1));
+        if ((w & 63) != 0) interior[stride - 1] &= -1L >>> (64 - (w & 63));
+
+        long[] removed = new long[bits.length];
+        // Words whose neighbourhood changed in the last and the second to last sub-iteration
+        boolean[] touched = new boolean[bits.length], lastTouched = new boolean[bits.length];
+        Arrays.fill(touched, true);
+        Arrays.fill(lastTouched, true);
+        boolean[] active = new boolean[bits.length];
+
+        boolean first = true;
+        // Two consecutive sub-iterations removing nothing means neither will ever remove anything again
+        for (int quiet = 0; quiet < 2; first = !first) {
+            for (int i = stride; i < bits.length - stride; i++) {
+                active[i] = touched[i] | lastTouched[i];
             }
+            boolean[] swap = lastTouched;
+            lastTouched = touched;
+            touched = swap;
+            Arrays.fill(touched, false);
 
-            P.clear();
-
-            for (int x = 1; x + 1 < buffer.getWidth(); x++) {
-                for (int y = 1; y + 1 < buffer.getHeight(); y++) {
-                    int a = A(buffer, x, y);
-                    int b = B(buffer, x, y);
-                    if (buffer.getRGB(x, y) == ON && 2 <= b && b <= 6 && a == 1
-                            && (!(buffer.getRGB(x - 1, y) == ON && buffer.getRGB(x, y + 1) == ON && buffer.getRGB(x, y - 1) == ON))
-                            && (!(buffer.getRGB(x - 1, y) == ON && buffer.getRGB(x + 1, y) == ON && buffer.getRGB(x, y - 1) == ON))) {
-                        P.add(new Point(x, y));
-                        hasChanged = true;
+            boolean changed = pass(bits, stride, h, interior, active, removed, first ? FIRST_PASS : SECOND_PASS);
+            if (changed) {
+                quiet = 0;
+                for (int r = 1; r + 1 < h; r++) {
+                    for (int c = 0; c != stride; c++) {
+                        int i = r * stride + c;
+                        long del = removed[i];
+                        if (del == 0) continue;
+                        bits[i] &= ~del;
+                        removed[i] = 0;
+                        touch(touched, stride, i, c, del);
                     }
                 }
+            } else {
+                quiet++;
             }
+        }
+    }
 
-            for (Point point : P) {
-                buffer.setRGB(point.x, point.y, OFF);
+    /**
+     * Thins a glyph without touching the page it is on.
+     * <p/>
+     * The glyph is thinned as it would be by thinning its page with the pixels around it off: its edges are thinned
+     * like any other pixels, except where they lie on the edge of the page. The pixels of a glyph masked down to whole
+     * components are thinned exactly as by thinning the page, and a view of a whole bitmap exactly as by thinning the
+     * bitmap.
+     *
+     * @param glyph The glyph to thin.
+     * @return A new bitmap of the glyph's size holding the thinned glyph.
+     */
+    public static BinaryImage thin(GlyphView glyph) {
+        int w = glyph.getWidth(), h = glyph.getHeight();
+        BinaryImage page = glyph.getPage();
+        // Surround the glyph with a border of off pixels, which thinning leaves alone, wherever the page goes on
+        int left = glyph.getX() > 0 ? 1 : 0, top = glyph.getY() > 0 ? 1 : 0;
+        int right = glyph.getX() + w < page.getWidth() ? 1 : 0, bottom = glyph.getY() + h < page.getHeight() ? 1 : 0;
+        BinaryImage padded = new BinaryImage(w + left + right, h + top + bottom);
+        int stride = padded.getStride();
+        long[] bits = padded.getBits();
+        for (int y = 0; y != h; y++) {
+            for (int i = 0; i != stride; i++) {
+                bits[(y + top) * stride + i] = glyph.wordAt((i << 6) - left, y);
             }
+        }
+        perform(padded);
+        return left + top + right + bottom == 0 ? padded : padded.crop(left, top, w, h);
+    }
 
-            P.clear();
+    private static boolean pass(long[] bits, int stride, int h, long[] interior, boolean[] active, long[] removed,
+                                boolean[] table) {
+        boolean changed = false;
+        for (int r = 1; r + 1 < h; r++) {
+            for (int c = 0; c != stride; c++) {
+                int i = r * stride + c;
+                if (!active[i]) continue;
+                long mid = bits[i];
+                long candidates = mid & interior[c];
+                if (candidates == 0) continue;
 
-        } while (hasChanged);
-    }
+                boolean hasLeft = c != 0, hasRight = c + 1 != stride;
+                long up = bits[i - stride], down = bits[i + stride];
+                // Words holding, at each bit, the neighbour of that bit's pixel in the given direction
+                long west = (mid << 1) | (hasLeft ? bits[i - 1] >>> 63 : 0);
+                long east = (mid >>> 1) | (hasRight ? bits[i + 1] << 63 : 0);
+                long northWest = (up << 1) | (hasLeft ? bits[i - stride - 1] >>> 63 : 0);
+                long northEast = (up >>> 1) | (hasRight ? bits[i - stride + 1] << 63 : 0);
+                long southWest = (down << 1) | (hasLeft ? bits[i + stride - 1] >>> 63 : 0);
+                long southEast = (down >>> 1) | (hasRight ? bits[i + stride + 1] << 63 : 0);
+
+                // A pixel whose four direct neighbours are on fails the triple-product test of both passes
+                candidates &= ~(up & down & west & east);
 
-    private static int A(BufferedImage binaryImage, int x, int y) {
-        int[][][] transitions = {
-                {{-1, 0}, {-1, 1}},
-                {{-1, 1}, {0, 1}},
-                {{0, 1}, {1, 1}},
-                {{1, 1}, {1, 0}},
-                {{1, 0}, {1, -1}},
-                {{1, -1}, {0, -1}},
-                {{0, -1}, {-1, -1}},
-                {{-1, -1}, {-1, 0}}
-        };
-        int a = 0;
-
-        for (int[][] t : transitions) {
-            if (binaryImage.getRGB(x + t[0][0], y + t[0][1]) == OFF && binaryImage.getRGB(x + t[1][0], y + t[1][1]) == ON) {
-                a++;
+                long del = 0;
+                for (; candidates != 0; candidates &= candidates - 1) {
+                    int b = Long.numberOfTrailingZeros(candidates);
+                    int code = (int) (up >>> b & 1)
+                            | (int) (northEast >>> b & 1) << 1
+                            | (int) (east >>> b & 1) << 2
+                            | (int) (southEast >>> b & 1) << 3
+                            | (int) (down >>> b & 1) << 4
+                            | (int) (southWest >>> b & 1) << 5
+                            | (int) (west >>> b & 1) << 6
+                            | (int) (northWest >>> b & 1) << 7;
+                    if (table[code]) del |= 1L << b;
+                }
+                if (del != 0) {
+                    removed[i] = del;
+                    changed = true;
+                }
             }
         }
-        return a;
+        return changed;
     }
 
-    public static int B(BufferedImage buf, int x, int y) {
-        int[] dy = {-1, -1, 0, 1, 1, 1, 0, -1};
-        int[] dx = {0, 1, 1, 1, 0, -1, -1, -1};
-        int b = 0;
-        for (int i = 0; i != dy.length; i++) {
-            b += buf.getRGB(x + dx[i], y + dy[i]) == ON ? 1 : 0;
+    private static void touch(boolean[] touched, int stride, int i, int c, long del) {
+        // Pixels on a word edge are also neighbours of the adjacent word
+        boolean left = c != 0 && (del & 1) != 0;
+        boolean right = c + 1 != stride && (del >>> 63) != 0;
+        for (int row = i - stride; row <= i + stride; row += stride) {
+            touched[row] = true;
+            if (left) touched[row - 1] = true;
+            if (right) touched[row + 1] = true;
         }
-        return b;
     }
 }
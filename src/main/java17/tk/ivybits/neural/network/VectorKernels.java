@@ -0,0 +1,219 @@
+package tk.ivybits.neural.network;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernels built on the Vector API, which process as many doubles at once as the processor's widest registers hold.
+ * <p/>
+ * This class is only compiled into the Java 17 part of the jar, and is only loaded if {@code jdk.incubator.vector}
+ * was added to the module graph, for instance with {@code --add-modules jdk.incubator.vector}.
+ */
+final class VectorKernels extends Kernels {
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    // As many floats as fit in a vector of doubles
+    private static final VectorSpecies<Float> FLOATS =
+            VectorSpecies.of(float.class, VectorShape.forBitSize(DOUBLES.vectorBitSize() / 2));
+    // The narrowest bytes which widen to one or more whole vectors of doubles
+    private static final VectorSpecies<Byte> BYTES =
+            VectorSpecies.of(byte.class, VectorShape.forBitSize(Math.max(64, DOUBLES.length() * 8)));
+
+    @Override
+    String getName() {
+        return "vector";
+    }
+
+    @Override
+    double dot(double[] a, double[] b, int off) {
+        int i = 0;
+        DoubleVector sum = DoubleVector.zero(DOUBLES);
+        for (int n = DOUBLES.loopBound(a.length); i < n; i += DOUBLES.length()) {
+            sum = DoubleVector.fromArray(DOUBLES, a, i).fma(DoubleVector.fromArray(DOUBLES, b, off + i), sum);
+        }
+        double rtn = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            rtn += a[i] * b[off + i];
+        }
+        return rtn;
+    }
+
+    @Override
+    double dot(double[] a, float[] b, int off) {
+        int i = 0;
+        DoubleVector sum = DoubleVector.zero(DOUBLES);
+        for (int n = DOUBLES.loopBound(a.length); i < n; i += DOUBLES.length()) {
+            DoubleVector w = (DoubleVector) FloatVector.fromArray(FLOATS, b, off + i)
+                    .convertShape(VectorOperators.F2D, DOUBLES, 0);
+            sum = DoubleVector.fromArray(DOUBLES, a, i).fma(w, sum);
+        }
+        double rtn = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            rtn += a[i] * b[off + i];
+        }
+        return rtn;
+    }
+
+    @Override
+    double dot(double[] a, byte[] b, int off) {
+        int i = 0;
+        DoubleVector sum = DoubleVector.zero(DOUBLES);
+        for (int n = BYTES.loopBound(a.length); i < n; i += BYTES.length()) {
+            ByteVector bytes = ByteVector.fromArray(BYTES, b, off + i);
+            for (int part = 0, j = i; j != i + BYTES.length(); part++, j += DOUBLES.length()) {
+                DoubleVector w = (DoubleVector) bytes.convertShape(VectorOperators.B2D, DOUBLES, part);
+                sum = DoubleVector.fromArray(DOUBLES, a, j).fma(w, sum);
+            }
+        }
+        double rtn = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            rtn += a[i] * b[off + i];
+        }
+        return rtn;
+    }
+
+    @Override
+    void dot4(double[] a, double[] b, double[] c, double[] d, double[] w, int off, double[] out) {
+        // Each sum is built exactly as dot(double[], double[], int) builds it
+        int i = 0;
+        DoubleVector sa = DoubleVector.zero(DOUBLES), sb = sa, sc = sa, sd = sa;
+        for (int n = DOUBLES.loopBound(a.length); i < n; i += DOUBLES.length()) {
+            DoubleVector x = DoubleVector.fromArray(DOUBLES, w, off + i);
+            sa = DoubleVector.fromArray(DOUBLES, a, i).fma(x, sa);
+            sb = DoubleVector.fromArray(DOUBLES, b, i).fma(x, sb);
+            sc = DoubleVector.fromArray(DOUBLES, c, i).fma(x, sc);
+            sd = DoubleVector.fromArray(DOUBLES, d, i).fma(x, sd);
+        }
+        double ra = sa.reduceLanes(VectorOperators.ADD), rb = sb.reduceLanes(VectorOperators.ADD);
+        double rc = sc.reduceLanes(VectorOperators.ADD), rd = sd.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            double x = w[off + i];
+            ra += a[i] * x;
+            rb += b[i] * x;
+            rc += c[i] * x;
+            rd += d[i] * x;
+        }
+        out[0] = ra;
+        out[1] = rb;
+        out[2] = rc;
+        out[3] = rd;
+    }
+
+    @Override
+    void dotRows4(double[] a, double[] w, int off, int stride, double[] out, int outOff) {
+        // Each sum is built exactly as dot(double[], double[], int) builds it
+        int i = 0, b = off + stride, c = b + stride, d = c + stride;
+        DoubleVector sa = DoubleVector.zero(DOUBLES), sb = sa, sc = sa, sd = sa;
+        for (int n = DOUBLES.loopBound(a.length); i < n; i += DOUBLES.length()) {
+            DoubleVector x = DoubleVector.fromArray(DOUBLES, a, i);
+            sa = x.fma(DoubleVector.fromArray(DOUBLES, w, off + i), sa);
+            sb = x.fma(DoubleVector.fromArray(DOUBLES, w, b + i), sb);
+            sc = x.fma(DoubleVector.fromArray(DOUBLES, w, c + i), sc);
+            sd = x.fma(DoubleVector.fromArray(DOUBLES, w, d + i), sd);
+        }
+        double ra = sa.reduceLanes(VectorOperators.ADD), rb = sb.reduceLanes(VectorOperators.ADD);
+        double rc = sc.reduceLanes(VectorOperators.ADD), rd = sd.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            double x = a[i];
+            ra += x * w[off + i];
+            rb += x * w[b + i];
+            rc += x * w[c + i];
+            rd += x * w[d + i];
+        }
+        out[outOff] = ra;
+        out[outOff + 1] = rb;
+        out[outOff + 2] = rc;
+        out[outOff + 3] = rd;
+    }
+
+    @Override
+    double vectorLength(double[] v, int off, int len) {
+        int i = off, end = off + len;
+        DoubleVector sum = DoubleVector.zero(DOUBLES);
+        for (int n = off + DOUBLES.loopBound(len); i < n; i += DOUBLES.length()) {
+            DoubleVector x = DoubleVector.fromArray(DOUBLES, v, i);
+            sum = x.fma(x, sum);
+        }
+        double rtn = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < end; i++) {
+            rtn += v[i] * v[i];
+        }
+        return rtn;
+    }
+
+    @Override
+    void scale(double[] v, int off, int len, double factor) {
+        int i = off, end = off + len;
+        for (int n = off + DOUBLES.loopBound(len); i < n; i += DOUBLES.length()) {
+            DoubleVector.fromArray(DOUBLES, v, i).mul(factor).intoArray(v, i);
+        }
+        for (; i < end; i++) {
+            v[i] *= factor;
+        }
+    }
+
+    @Override
+    double distanceSquared(double[] a, double scale, double[] b, int off) {
+        int i = 0;
+        DoubleVector sum = DoubleVector.zero(DOUBLES);
+        for (int n = DOUBLES.loopBound(a.length); i < n; i += DOUBLES.length()) {
+            DoubleVector diff = DoubleVector.fromArray(DOUBLES, a, i).mul(scale)
+                    .sub(DoubleVector.fromArray(DOUBLES, b, off + i));
+            sum = diff.fma(diff, sum);
+        }
+        double rtn = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            double diff = a[i] * scale - b[off + i];
+            rtn += diff * diff;
+        }
+        return rtn;
+    }
+
+    @Override
+    void scaleAdd(double[] a, double scale, double[] b, int off, double[] out) {
+        // Multiplied and added separately rather than fused, to round exactly as the scalar kernel does
+        int i = 0;
+        for (int n = DOUBLES.loopBound(a.length); i < n; i += DOUBLES.length()) {
+            DoubleVector.fromArray(DOUBLES, a, i).mul(scale)
+                    .add(DoubleVector.fromArray(DOUBLES, b, off + i))
+                    .intoArray(out, i);
+        }
+        for (; i < a.length; i++) {
+            out[i] = a[i] * scale + b[off + i];
+        }
+    }
+
+    @Override
+    void accumulateDifference(double[] a, double scale, double[] b, int off, double[] sums) {
+        int i = 0;
+        for (int n = DOUBLES.loopBound(a.length); i < n; i += DOUBLES.length()) {
+            DoubleVector diff = DoubleVector.fromArray(DOUBLES, a, i).mul(scale)
+                    .sub(DoubleVector.fromArray(DOUBLES, b, off + i));
+            DoubleVector.fromArray(DOUBLES, sums, off + i).add(diff).intoArray(sums, off + i);
+        }
+        for (; i < a.length; i++) {
+            sums[off + i] += a[i] * scale - b[off + i];
+        }
+    }
+
+    @Override
+    double addScaled(double[] a, double scale, double[] b, int off, int len) {
+        int i = off, end = off + len;
+        DoubleVector length = DoubleVector.zero(DOUBLES);
+        for (int n = off + DOUBLES.loopBound(len); i < n; i += DOUBLES.length()) {
+            DoubleVector step = DoubleVector.fromArray(DOUBLES, a, i).mul(scale);
+            DoubleVector.fromArray(DOUBLES, b, i).add(step).intoArray(b, i);
+            length = step.fma(step, length);
+        }
+        double rtn = length.reduceLanes(VectorOperators.ADD);
+        for (; i < end; i++) {
+            double step = scale * a[i];
+            b[i] += step;
+            rtn += step * step;
+        }
+        return rtn;
+    }
+}
@@ -0,0 +1,84 @@
+package tk.ivybits.neural.network.kohonen;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that seeded training is reproducible, and that sharding it across a pool only changes the order corrections
+ * are summed in.
+ */
+public class KohonenNetworkTest {
+    private static final int INPUTS = 49, VALUES = 12, SAMPLES_PER_VALUE = 5;
+    private static final long SEED = 7;
+    private static ForkJoinPool two, three;
+
+    @BeforeClass
+    public static void startPools() {
+        two = new ForkJoinPool(2);
+        three = new ForkJoinPool(3);
+    }
+
+    @AfterClass
+    public static void stopPools() {
+        two.shutdown();
+        three.shutdown();
+    }
+
+    @Test
+    public void seededTrainingIsReproducible() {
+        for (ForkJoinPool pool : new ForkJoinPool[]{null, two, three}) {
+            for (KohonenNetwork.LearnMethod method : KohonenNetwork.LearnMethod.values()) {
+                KohonenNetwork<Integer> first = train(pool, method), second = train(pool, method);
+                assertArrayEquals(first.outputWeights, second.outputWeights, 0);
+                assertEquals(first.getError(), second.getError(), 0);
+                assertEquals(first.getStats().getEpochs(), second.getStats().getEpochs());
+                assertArrayEquals(first.getNeuronMap(), second.getNeuronMap());
+            }
+        }
+    }
+
+    @Test
+    public void threadCountOnlyChangesRounding() {
+        for (KohonenNetwork.LearnMethod method : KohonenNetwork.LearnMethod.values()) {
+            KohonenNetwork<Integer> serial = train(null, method);
+            for (ForkJoinPool pool : new ForkJoinPool[]{two, three}) {
+                KohonenNetwork<Integer> sharded = train(pool, method);
+                String message = method + " on " + pool.getParallelism() + " threads";
+                assertArrayEquals(message, serial.outputWeights, sharded.outputWeights, 1E-9);
+                assertEquals(message, serial.getError(), sharded.getError(), 1E-9);
+                assertEquals(message, serial.getStats().getEpochs(), sharded.getStats().getEpochs());
+                assertEquals(message, serial.getStats().getForcedWins(), sharded.getStats().getForcedWins());
+                assertEquals(message, serial.getStats().getRestarts(), sharded.getStats().getRestarts());
+                assertArrayEquals(message, serial.getNeuronMap(), sharded.getNeuronMap());
+            }
+        }
+    }
+
+    private static KohonenNetwork<Integer> train(ForkJoinPool pool, KohonenNetwork.LearnMethod method) {
+        KohonenNetwork<Integer> net = new KohonenNetwork<>(INPUTS, VALUES);
+        net.setPool(pool);
+        // Noisy copies of a random prototype per value
+        Random random = new Random(SEED);
+        for (int value = 0; value != VALUES; value++) {
+            double[] prototype = new double[INPUTS];
+            for (int i = 0; i != INPUTS; i++) prototype[i] = random.nextBoolean() ? 0.5 : -0.5;
+            for (int sample = 0; sample != SAMPLES_PER_VALUE; sample++) {
+                double[] input = new double[INPUTS];
+                for (int i = 0; i != INPUTS; i++) input[i] = prototype[i] + random.nextGaussian() * 0.1;
+                net.queueData(value, input);
+            }
+        }
+        TrainingSchedule schedule = new TrainingSchedule();
+        schedule.setMethod(method);
+        schedule.setSeed(SEED);
+        schedule.setMaxEpochs(300);
+        net.learn(schedule);
+        return net;
+    }
+}
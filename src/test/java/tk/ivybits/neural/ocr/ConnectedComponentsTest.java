@@ -0,0 +1,78 @@
+package tk.ivybits.neural.ocr;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.awt.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that labeling a bitmap in bands of rows gives exactly the components of labeling it in one pass.
+ */
+public class ConnectedComponentsTest {
+    private static ForkJoinPool pool;
+
+    @BeforeClass
+    public static void startPool() {
+        pool = new ForkJoinPool(3);
+    }
+
+    @AfterClass
+    public static void stopPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void labelsPagesInBandsLikeInOnePass() {
+        for (String name : Pages.FONT_NAMES) {
+            BinaryImage page = BinaryImage.of(Pages.page(new Font(name, Font.PLAIN, 20), 700, 1100, 3));
+            assertBandedLikeOnePass(name, page);
+        }
+    }
+
+    @Test
+    public void labelsNoiseInBandsLikeInOnePass() {
+        for (double density : new double[]{0.05, 0.3, 0.6}) {
+            assertBandedLikeOnePass("at " + density, Pages.noise(200, 1000, density, 4));
+        }
+    }
+
+    @Test
+    public void joinsComponentsAcrossBands() {
+        BinaryImage image = new BinaryImage(300, 1000);
+        // Two bars which only meet at the bottom, so their halves in every band above are joined late
+        for (int y = 10; y != 900; y++) {
+            image.set(10, y);
+            image.set(200, y);
+        }
+        image.setRun(900, 10, 201);
+        // A one pixel wide zigzag, which crosses every seam between bands diagonally
+        for (int y = 0; y != 1000; y++) {
+            image.set(250 + ((y & 32) == 0 ? y & 31 : 31 - (y & 31)), y);
+        }
+        assertBandedLikeOnePass("bars", image);
+        assertEquals(2, ConnectedComponents.label(image, pool).getCount());
+    }
+
+    private static void assertBandedLikeOnePass(String message, BinaryImage image) {
+        ConnectedComponents expected = ConnectedComponents.label(image);
+        ConnectedComponents actual = ConnectedComponents.label(image, pool);
+        assertEquals(message, expected.getCount(), actual.getCount());
+        assertEquals(message, expected.getRunCount(), actual.getRunCount());
+        for (int c = 0; c != expected.getCount(); c++) {
+            assertEquals(message, expected.getBounds(c), actual.getBounds(c));
+            assertEquals(message, expected.getArea(c), actual.getArea(c));
+            assertEquals(message, expected.getCentroidX(c), actual.getCentroidX(c), 0);
+            assertEquals(message, expected.getCentroidY(c), actual.getCentroidY(c), 0);
+            assertEquals(message, expected.mask(c), actual.mask(c));
+        }
+        for (int y = 0; y != image.getHeight(); y++) {
+            for (int x = 0; x != image.getWidth(); x++) {
+                assertEquals(message, expected.labelAt(x, y), actual.labelAt(x, y));
+            }
+        }
+    }
+}
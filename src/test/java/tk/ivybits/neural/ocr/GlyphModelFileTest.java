@@ -0,0 +1,105 @@
+package tk.ivybits.neural.ocr;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import tk.ivybits.neural.network.kohonen.KohonenModel;
+import tk.ivybits.neural.network.kohonen.TrainingSchedule;
+import tk.ivybits.neural.network.kohonen.WeightMatrix;
+import tk.ivybits.neural.network.kohonen.WeightPrecision;
+
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+/**
+ * Saves a trained recognizer at every precision and checks the loaded one recognizes exactly like the saved one held
+ * at that precision.
+ */
+public class GlyphModelFileTest {
+    private static final Font FONT = new Font(Font.SERIF, Font.PLAIN, 48);
+    private static GlyphRecognizer trained;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void train() {
+        trained = new GlyphRecognizer(7, 7, true, Pages.GLYPHS);
+        // Not the defaults, so that losing them would show
+        trained.setCoverage(true);
+        TrainingSchedule schedule = new TrainingSchedule();
+        schedule.setSeed(1L);
+        schedule.setMaxEpochs(200);
+        trained.setTrainingSchedule(schedule);
+        trained.train(FONT);
+    }
+
+    @Test
+    public void roundTripsFloat64() throws IOException {
+        assertRoundTrips(WeightPrecision.FLOAT64);
+    }
+
+    @Test
+    public void roundTripsFloat32() throws IOException {
+        assertRoundTrips(WeightPrecision.FLOAT32);
+    }
+
+    @Test
+    public void roundTripsInt8() throws IOException {
+        assertRoundTrips(WeightPrecision.INT8);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        File file = folder.newFile();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.write(new byte[64]);
+        }
+        GlyphRecognizer.load(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedFiles() throws IOException {
+        File file = folder.newFile();
+        trained.save(file, WeightPrecision.FLOAT64);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 1);
+        }
+        GlyphRecognizer.load(file);
+    }
+
+    private void assertRoundTrips(WeightPrecision precision) throws IOException {
+        File file = folder.newFile();
+        trained.save(file, precision);
+        GlyphRecognizer loaded = GlyphRecognizer.load(file);
+
+        assertEquals(trained.getWidth(), loaded.getWidth());
+        assertEquals(trained.getHeight(), loaded.getHeight());
+        assertEquals(trained.isDoThin(), loaded.isDoThin());
+        assertEquals(trained.isCoverage(), loaded.isCoverage());
+
+        KohonenModel<Character> expected = trained.getTrainedModel().withPrecision(precision);
+        KohonenModel<Character> actual = loaded.getTrainedModel();
+        assertEquals(expected.getInputNeuronCount(), actual.getInputNeuronCount());
+        assertEquals(expected.getOutputNeuronCount(), actual.getOutputNeuronCount());
+        WeightMatrix expectedWeights = expected.getWeights(), actualWeights = actual.getWeights();
+        for (int n = 0; n != expected.getOutputNeuronCount(); n++) {
+            assertEquals(expected.getLabel(n), actual.getLabel(n));
+            for (int i = 0; i != expectedWeights.getColumns(); i++) {
+                assertEquals(expectedWeights.get(n, i), actualWeights.get(n, i), 0);
+            }
+        }
+
+        for (char glyph : Pages.GLYPHS) {
+            GlyphView view = new GlyphView(BinaryImage.of(GlyphGenerator.getGlyphImage(FONT, glyph)));
+            double[] input = trained.getInputFor(view, false);
+            assertArrayEquals(input, loaded.getInputFor(view, false), 0);
+            assertEquals("'" + glyph + "'", expected.recall(input), actual.recall(input));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package tk.ivybits.neural.ocr;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Renders the glyphs and pages the tests run on, from the JRE's logical fonts and a fixed seed.
+ */
+class Pages {
+    static final char[] GLYPHS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789".toCharArray();
+    static final String[] FONT_NAMES = {Font.SERIF, Font.SANS_SERIF, Font.MONOSPACED};
+
+    /**
+     * Renders a page of random words, black on white.
+     */
+    static BufferedImage page(Font font, int width, int height, long seed) {
+        Random random = new Random(seed);
+        BufferedImage page = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = page.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, width, height);
+        g.setColor(Color.BLACK);
+        g.setFont(font);
+        FontMetrics metrics = g.getFontMetrics();
+
+        int margin = font.getSize();
+        for (int y = margin + metrics.getAscent(); y + metrics.getDescent() < height - margin; y += metrics.getHeight()) {
+            StringBuilder line = new StringBuilder();
+            while (true) {
+                StringBuilder word = new StringBuilder();
+                for (int n = 2 + random.nextInt(7); n != 0; n--) {
+                    word.append(GLYPHS[random.nextInt(GLYPHS.length)]);
+                }
+                String next = line.length() == 0 ? word.toString() : line + " " + word;
+                if (metrics.stringWidth(next) > width - 2 * margin) break;
+                line.setLength(0);
+                line.append(next);
+            }
+            g.drawString(line.toString(), margin, y);
+        }
+        g.dispose();
+        return page;
+    }
+
+    /**
+     * Turns on each pixel of a bitmap with the given probability.
+     */
+    static BinaryImage noise(int width, int height, double density, long seed) {
+        Random random = new Random(seed);
+        BinaryImage noise = new BinaryImage(width, height);
+        for (int y = 0; y != height; y++) {
+            for (int x = 0; x != width; x++) {
+                if (random.nextDouble() < density) noise.set(x, y);
+            }
+        }
+        return noise;
+    }
+}
@@ -0,0 +1,86 @@
+package tk.ivybits.neural.ocr;
+
+import java.awt.*;
+import java.util.*;
+
+/**
+ * The per-pixel Zhang-Suen thinning {@link ZhangSuen} used before it was table-driven, kept to check it against.
+ */
+class ReferenceZhangSuen {
+    static void perform(BinaryImage buffer) {
+        LinkedList<Point> P = new LinkedList<>();
+        boolean hasChanged;
+        do {
+            hasChanged = false;
+            for (int x = 1; x + 1 < buffer.getWidth(); x++) {
+                for (int y = 1; y + 1 < buffer.getHeight(); y++) {
+                    int a = A(buffer, x, y);
+                    int b = B(buffer, x, y);
+                    if (buffer.get(x, y) && 2 <= b && b <= 6 && a == 1
+                            && (!(buffer.get(x - 1, y) && buffer.get(x, y + 1) && buffer.get(x + 1, y)))
+                            && (!(buffer.get(x, y + 1) && buffer.get(x + 1, y) && buffer.get(x, y - 1)))) {
+                        P.add(new Point(x, y));
+                        hasChanged = true;
+                    }
+                }
+            }
+
+            for (Point point : P) {
+                buffer.clear(point.x, point.y);
+            }
+
+            P.clear();
+
+            for (int x = 1; x + 1 < buffer.getWidth(); x++) {
+                for (int y = 1; y + 1 < buffer.getHeight(); y++) {
+                    int a = A(buffer, x, y);
+                    int b = B(buffer, x, y);
+                    if (buffer.get(x, y) && 2 <= b && b <= 6 && a == 1
+                            && (!(buffer.get(x - 1, y) && buffer.get(x, y + 1) && buffer.get(x, y - 1)))
+                            && (!(buffer.get(x - 1, y) && buffer.get(x + 1, y) && buffer.get(x, y - 1)))) {
+                        P.add(new Point(x, y));
+                        hasChanged = true;
+                    }
+                }
+            }
+
+            for (Point point : P) {
+                buffer.clear(point.x, point.y);
+            }
+
+            P.clear();
+
+        } while (hasChanged);
+    }
+
+    private static int A(BinaryImage binaryImage, int x, int y) {
+        int[][][] transitions = {
+                {{-1, 0}, {-1, 1}},
+                {{-1, 1}, {0, 1}},
+                {{0, 1}, {1, 1}},
+                {{1, 1}, {1, 0}},
+                {{1, 0}, {1, -1}},
+                {{1, -1}, {0, -1}},
+                {{0, -1}, {-1, -1}},
+                {{-1, -1}, {-1, 0}}
+        };
+        int a = 0;
+
+        for (int[][] t : transitions) {
+            if (!binaryImage.get(x + t[0][0], y + t[0][1]) && binaryImage.get(x + t[1][0], y + t[1][1])) {
+                a++;
+            }
+        }
+        return a;
+    }
+
+    private static int B(BinaryImage buf, int x, int y) {
+        int[] dy = {-1, -1, 0, 1, 1, 1, 0, -1};
+        int[] dx = {0, 1, 1, 1, 0, -1, -1, -1};
+        int b = 0;
+        for (int i = 0; i != dy.length; i++) {
+            b += buf.get(x + dx[i], y + dy[i]) ? 1 : 0;
+        }
+        return b;
+    }
+}
@@ -0,0 +1,62 @@
+package tk.ivybits.neural.ocr;
+
+import org.junit.Test;
+
+import java.awt.*;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the table-driven thinning against the per-pixel implementation it replaced.
+ */
+public class ZhangSuenTest {
+    @Test
+    public void thinsRenderedGlyphsLikeTheReference() {
+        for (String name : Pages.FONT_NAMES) {
+            for (int size : new int[]{24, 48, 96}) {
+                Font font = new Font(name, Font.PLAIN, size);
+                for (char glyph : Pages.GLYPHS) {
+                    BinaryImage image = BinaryImage.of(GlyphGenerator.getGlyphImage(font, glyph));
+                    assertThinnedLikeReference(font + " '" + glyph + "'", image);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void thinsRenderedPagesLikeTheReference() {
+        for (String name : Pages.FONT_NAMES) {
+            BinaryImage page = BinaryImage.of(Pages.page(new Font(name, Font.BOLD, 28), 450, 300, 1));
+            assertThinnedLikeReference(name, page);
+        }
+    }
+
+    @Test
+    public void thinsNoiseLikeTheReference() {
+        // Widths on either side of a word boundary, so that neighbours are read across words
+        int[] widths = {3, 63, 64, 65, 127, 130};
+        long seed = 0;
+        for (int width : widths) {
+            for (double density : new double[]{0.3, 0.5, 0.7}) {
+                BinaryImage noise = Pages.noise(width, 40, density, seed++);
+                assertThinnedLikeReference(width + " wide at " + density, noise);
+            }
+        }
+    }
+
+    @Test
+    public void thinsWholeBitmapViewsLikeTheBitmap() {
+        BinaryImage page = BinaryImage.of(Pages.page(new Font(Font.SERIF, Font.BOLD, 28), 450, 300, 2));
+        BinaryImage thinned = page.copy();
+        ZhangSuen.perform(thinned);
+        assertEquals(thinned, ZhangSuen.thin(new GlyphView(page)));
+    }
+
+    private static void assertThinnedLikeReference(String message, BinaryImage image) {
+        BinaryImage expected = image.copy();
+        ReferenceZhangSuen.perform(expected);
+        BinaryImage actual = image.copy();
+        ZhangSuen.perform(actual);
+        assertEquals(message, expected, actual);
+    }
+}